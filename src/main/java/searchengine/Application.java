@@ -7,6 +7,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.scheduling.annotation.EnableAsync;
+import org.springframework.scheduling.annotation.EnableScheduling;
 import searchengine.model.PageEntity;
 import searchengine.repositories.PageRepository;
 
@@ -15,6 +16,7 @@ import java.util.List;
 
 @SpringBootApplication
 @EnableAsync
+@EnableScheduling
 public class Application {
     private static final Logger logger = LoggerFactory.getLogger(Application.class);
 
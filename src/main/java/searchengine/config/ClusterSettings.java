@@ -0,0 +1,17 @@
+package searchengine.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "cluster")
+public class ClusterSettings {
+    private boolean enabled;
+    private String nodeId;
+    private int partitions = 16;
+    private int leaseTtlSeconds = 30;
+}
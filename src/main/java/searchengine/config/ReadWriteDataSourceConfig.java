@@ -0,0 +1,73 @@
+package searchengine.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.util.Map;
+
+/**
+ * Раздельные пулы соединений для чтения и записи. Транзакции readOnly (поиск,
+ * статистика) идут в пул read-datasource — на реплику или отдельный пул к основной БД,
+ * всё остальное — в основной пул spring.datasource. У каждого пула свои размер и таймауты,
+ * поэтому запись при индексации не выбирает соединения у поиска.
+ *
+ * Пул выбирается при первом обращении к БД, а не в начале транзакции:
+ * LazyConnectionDataSourceProxy откладывает получение соединения до момента,
+ * когда признак readOnly уже выставлен.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "read-datasource", name = "enabled", havingValue = "true")
+public class ReadWriteDataSourceConfig {
+
+    private static final String READ = "read";
+    private static final String WRITE = "write";
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource writeDataSource(DataSourceProperties properties) {
+        HikariDataSource ds = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        ds.setPoolName("write-pool");
+        return ds;
+    }
+
+    /** Без read-datasource.url читает из основной БД, но через свой пул. */
+    @Bean
+    @ConfigurationProperties("read-datasource.hikari")
+    public HikariDataSource readDataSource(DataSourceProperties properties, Environment env) {
+        HikariDataSource ds = new HikariDataSource();
+        ds.setJdbcUrl(env.getProperty("read-datasource.url", properties.determineUrl()));
+        ds.setUsername(env.getProperty("read-datasource.username", properties.determineUsername()));
+        ds.setPassword(env.getProperty("read-datasource.password", properties.determinePassword()));
+        String driver = env.getProperty("read-datasource.driver-class-name", properties.determineDriverClassName());
+        if (driver != null) ds.setDriverClassName(driver);
+        ds.setPoolName("read-pool");
+        return ds;
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(@Qualifier("writeDataSource") DataSource writeDataSource,
+                                 @Qualifier("readDataSource") DataSource readDataSource) {
+        AbstractRoutingDataSource routing = new AbstractRoutingDataSource() {
+            @Override
+            protected Object determineCurrentLookupKey() {
+                return TransactionSynchronizationManager.isCurrentTransactionReadOnly() ? READ : WRITE;
+            }
+        };
+        routing.setTargetDataSources(Map.of(READ, readDataSource, WRITE, writeDataSource));
+        routing.setDefaultTargetDataSource(writeDataSource);
+        routing.afterPropertiesSet();
+        return new LazyConnectionDataSourceProxy(routing);
+    }
+}
@@ -0,0 +1,19 @@
+package searchengine.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "search.sharding")
+public class ShardSettings {
+    /** Базовые адреса шардов, например http://localhost:8081. Пустой список — обычный режим. */
+    private List<String> shards = new ArrayList<>();
+    private int timeoutMs = 2000;
+}
@@ -3,9 +3,16 @@ package searchengine.config;
 import lombok.Getter;
 import lombok.Setter;
 
+import java.util.List;
+
 @Setter
 @Getter
 public class Site {
     private String url;
     private String name;
+    private Integer maxPages;
+    private Long maxBytes;
+    private Integer maxDurationSeconds;
+    /** Параметры отслеживания этого сайта сверх общего списка indexing-settings.tracking-params. */
+    private List<String> trackingParams;
 }
@@ -0,0 +1,50 @@
+package searchengine.config;
+
+import org.hibernate.boot.Metadata;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.integrator.spi.Integrator;
+import org.hibernate.jpa.boot.spi.IntegratorProvider;
+import org.hibernate.mapping.ForeignKey;
+import org.hibernate.service.spi.SessionFactoryServiceRegistry;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import searchengine.services.SitePartitions;
+
+import java.util.List;
+
+/**
+ * Секционированные по site_id таблицы MySQL не допускают внешних ключей,
+ * поэтому при включённом секционировании ddl-auto не создаёт их для page, lemma и idx —
+ * иначе каждый запуск пытался бы добавить их заново и писал ошибку в журнал.
+ * Целостность этих связей обеспечивает код индексации, а удаление сайта —
+ * удаление его секций (см. {@link SitePartitions}).
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "storage.site-partitioning", name = "enabled", havingValue = "true")
+public class SitePartitioningConfig {
+
+    @Bean
+    public HibernatePropertiesCustomizer noForeignKeysOnPartitionedTables() {
+        Integrator integrator = new Integrator() {
+            @Override
+            public void integrate(Metadata metadata, SessionFactoryImplementor sessionFactory,
+                                  SessionFactoryServiceRegistry serviceRegistry) {
+                // вызывается до обновления схемы
+                metadata.collectTableMappings().forEach(table -> {
+                    if (SitePartitions.TABLES.contains(table.getName())) {
+                        table.getForeignKeys().values().forEach(ForeignKey::disableCreation);
+                    }
+                });
+            }
+
+            @Override
+            public void disintegrate(SessionFactoryImplementor sessionFactory,
+                                     SessionFactoryServiceRegistry serviceRegistry) {
+            }
+        };
+        return properties -> properties.put("hibernate.integrator_provider",
+                (IntegratorProvider) () -> List.of(integrator));
+    }
+}
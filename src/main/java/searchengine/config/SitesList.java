@@ -16,6 +16,29 @@ public class SitesList {
     private String userAgent;
     private String referer;
     private Integer delayMs;
+    private Integer fetchTimeoutMs;
+    private Integer maxBodyBytes;
+
+    private Integer minConcurrency;
+    private Integer maxConcurrency;
+    private Integer targetLatencyMs;
+    private Integer maxDepth;
+    private Integer frontierCapacity;
+    private String frontierDir;
+    private String checkpointDir;
+    private Integer checkpointIntervalMs;
+    private Integer stopDrainTimeoutMs;
+    private Boolean aggregateLemmas;
+    private List<String> trackingParams;
+
+    private Integer boilerplateMinRepeats;
+    private Double boilerplateRatio;
+    private Integer titleWeight;
+    private Integer headingWeight;
+
+    private Integer maxPages;
+    private Long maxBytes;
+    private Integer maxDurationSeconds;
 }
 
 
@@ -0,0 +1,17 @@
+package searchengine.config;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import searchengine.utils.QueryProfile;
+
+/**
+ * Считает SQL-запросы Hibernate в профиль текущего поискового запроса.
+ * Подключается через hibernate.session_factory.statement_inspector.
+ */
+public class SqlStatementCounter implements StatementInspector {
+
+    @Override
+    public String inspect(String sql) {
+        QueryProfile.onSqlStatement();
+        return sql;
+    }
+}
@@ -1,11 +1,18 @@
 package searchengine.controllers;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.boot.availability.ApplicationAvailability;
+import org.springframework.boot.availability.ReadinessState;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import searchengine.config.SitesList;
+import searchengine.dto.indexing.IndexJobResponse;
+import searchengine.dto.indexing.IndexPagesRequest;
 import searchengine.dto.statistics.StatisticsResponse;
+import searchengine.services.IndexJobService;
+import searchengine.services.IndexingEventsService;
 import searchengine.services.IndexingServiceImpl;
 import searchengine.services.StatisticsService;
 import java.util.Map;
@@ -19,6 +26,9 @@ public class ApiController {
     private final StatisticsService statisticsService;
     private final IndexingServiceImpl indexingService;
     private final SitesList sitesList;
+    private final IndexJobService indexJobService;
+    private final IndexingEventsService indexingEventsService;
+    private final ApplicationAvailability availability;
 
     @GetMapping("/startIndexing")
     public ResponseEntity<Map<String, Object>> startIndexing() {
@@ -42,6 +52,21 @@ public class ApiController {
         }
     }
 
+    @GetMapping("/resumeIndexing")
+    public ResponseEntity<Map<String, Object>> resumeIndexing() {
+        if (indexingService.isIndexing()) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(Map.of("result", false, "error", "Индексация уже запущена"));
+        }
+        boolean ok = indexingService.resumeIndexing();
+        if (ok) {
+            return ResponseEntity.ok(Map.of("result", true));
+        } else {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(Map.of("result", false, "error", "Нет остановленных обходов, которые можно продолжить"));
+        }
+    }
+
     @PostMapping("/indexPage")
     public ResponseEntity<Map<String, Object>> indexPage(@RequestParam("url") String url) {
         if (url == null || url.isBlank()) {
@@ -67,6 +92,39 @@ public class ApiController {
         }
     }
 
+    @PostMapping("/indexPages")
+    public ResponseEntity<Map<String, Object>> indexPages(@RequestBody IndexPagesRequest request) {
+        try {
+            String jobId = indexJobService.submit(request.getUrls());
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(Map.of("result", true, "jobId", jobId));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("result", false, "error", e.getMessage()));
+        }
+    }
+
+    @GetMapping("/indexPages/{jobId}")
+    public ResponseEntity<?> indexPagesStatus(@PathVariable String jobId) {
+        return indexJobService.status(jobId)
+                .<ResponseEntity<?>>map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.status(HttpStatus.NOT_FOUND)
+                        .body(Map.of("result", false, "error", "Задание не найдено")));
+    }
+
+    @GetMapping(value = "/indexing/events", produces = "text/event-stream")
+    public SseEmitter indexingEvents() {
+        return indexingEventsService.subscribe();
+    }
+
+    /** Готовность к трафику для балансировщика: 503, пока, например, грузится словарь морфологии. */
+    @GetMapping("/ready")
+    public ResponseEntity<Map<String, Object>> ready() {
+        if (availability.getReadinessState() == ReadinessState.ACCEPTING_TRAFFIC) {
+            return ResponseEntity.ok(Map.of("result", true));
+        }
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .body(Map.of("result", false, "error", "Приложение ещё не готово принимать запросы"));
+    }
+
     @GetMapping("/statistics")
     public ResponseEntity<StatisticsResponse> statistics() {
         return ResponseEntity.ok(statisticsService.getStatistics());
@@ -1,39 +1,108 @@
 package searchengine.controllers;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.TransactionTimedOutException;
 import org.springframework.web.bind.annotation.*;
+import searchengine.dto.search.SearchFacets;
 import searchengine.dto.search.SearchResultDto;
+import searchengine.dto.search.ShardedSearchResult;
+import searchengine.services.SearchAdmission;
 import searchengine.services.SearchService;
+import searchengine.services.ShardedSearchService;
+import searchengine.services.SpellCorrector;
+import searchengine.utils.QueryProfile;
+import searchengine.utils.SearchDeadline;
+import searchengine.utils.SearchTimeoutException;
 
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 
 @RestController
 @RequestMapping("/api")
 @RequiredArgsConstructor
 public class SearchController {
 
+    /** Журнал медленных запросов: одна JSON-строка на запрос, направляется в отдельный файл настройками логирования. */
+    private static final Logger slowQueryLog = LoggerFactory.getLogger("searchengine.slow-query");
+
     private final SearchService searchService;
+    private final ShardedSearchService shardedSearchService;
+    private final SearchAdmission admission;
+    private final SpellCorrector spellCorrector;
+    private final ObjectMapper objectMapper;
+
+    @Value("${search.slow-query-ms:1000}")
+    private long slowQueryMs;
 
     @GetMapping("/search")
     public ResponseEntity<?> search(
             @RequestParam String query,
             @RequestParam(required = false) String site,
             @RequestParam(defaultValue = "0") int offset,
-            @RequestParam(defaultValue = "20") int limit
+            @RequestParam(defaultValue = "20") int limit,
+            @RequestParam(defaultValue = "false") boolean correct,
+            @RequestParam(defaultValue = "false") boolean debug,
+            @RequestParam(defaultValue = "false") boolean facets
     ) {
+        if (!admission.tryAcquire()) {
+            return overloaded("Сервис поиска перегружен, повторите запрос позже");
+        }
+        SearchDeadline.start(admission.getDeadlineMs());
+        QueryProfile.start();
+        String originalQuery = query;
         try {
-            List<SearchResultDto> results = searchService.search(query, site, offset, limit);
-
             Map<String, Object> response = new HashMap<>();
+            Optional<String> suggestion;
+            try (var p = QueryProfile.phase("spelling")) {
+                suggestion = spellCorrector.correct(query);
+            }
+            if (suggestion.isPresent()) {
+                response.put("suggestion", suggestion.get());
+                if (correct) {
+                    response.put("originalQuery", query);
+                    query = suggestion.get();
+                }
+            }
+
+            List<SearchResultDto> results;
+            SearchFacets counts = new SearchFacets(facets);
+            if (shardedSearchService.isEnabled()) {
+                ShardedSearchResult sharded = shardedSearchService.search(query, site, offset, limit, counts);
+                results = sharded.getResults();
+                response.put("shards", Map.of(
+                        "total", sharded.getShardsTotal(),
+                        "failed", sharded.getFailedShards()));
+                response.put("partial", !sharded.getFailedShards().isEmpty());
+            } else {
+                results = searchService.search(query, site, offset, limit, counts);
+            }
+
             response.put("result", true);
             response.put("count", results.size());
             response.put("data", results);
+            response.put("facets", counts);
+            QueryProfile.count("results", results.size());
 
+            QueryProfile profile = QueryProfile.finish();
+            if (debug) response.put("debug", profile.toMap());
+            logIfSlow(profile, originalQuery, site, offset, limit, null);
             return ResponseEntity.ok(response);
 
+        } catch (SearchTimeoutException | QueryTimeoutException | TransactionTimedOutException e) {
+            // срок истёк между шагами поиска или БД оборвала запрос по таймауту
+            admission.onDeadlineExceeded();
+            return overloaded(SearchTimeoutException.MESSAGE);
         } catch (IllegalArgumentException e) {
             return ResponseEntity.badRequest().body(Map.of(
                     "result", false,
@@ -44,8 +113,41 @@ public class SearchController {
                     "result", false,
                     "error", "Ошибка сервера: " + e.getMessage()
             ));
+        } finally {
+            // при ошибке профиль ещё не снят — медленный запрос попадает в журнал с пометкой failed
+            QueryProfile failed = QueryProfile.finish();
+            if (failed != null) logIfSlow(failed, originalQuery, site, offset, limit, "failed");
+            SearchDeadline.clear();
+            admission.release();
         }
     }
+
+    private void logIfSlow(QueryProfile profile, String query, String site, int offset, int limit, String outcome) {
+        if (profile.totalMs() < slowQueryMs) return;
+        Map<String, Object> entry = new LinkedHashMap<>();
+        entry.put("query", query);
+        entry.put("site", site);
+        entry.put("offset", offset);
+        entry.put("limit", limit);
+        if (outcome != null) entry.put("outcome", outcome);
+        entry.putAll(profile.toMap());
+        try {
+            slowQueryLog.warn(objectMapper.writeValueAsString(entry));
+        } catch (Exception e) {
+            slowQueryLog.warn("{}", entry);
+        }
+    }
+
+    @GetMapping("/search/metrics")
+    public ResponseEntity<Map<String, Object>> metrics() {
+        return ResponseEntity.ok(admission.metrics());
+    }
+
+    private ResponseEntity<Map<String, Object>> overloaded(String error) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(admission.getRetryAfterSeconds()))
+                .body(Map.of("result", false, "error", error));
+    }
 }
 
 
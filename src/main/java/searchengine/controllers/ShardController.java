@@ -0,0 +1,60 @@
+package searchengine.controllers;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.TransactionTimedOutException;
+import org.springframework.web.bind.annotation.*;
+import searchengine.dto.search.ShardSearchRequest;
+import searchengine.dto.search.ShardSiteHits;
+import searchengine.dto.search.ShardSiteStats;
+import searchengine.dto.search.ShardStatsRequest;
+import searchengine.services.SearchAdmission;
+import searchengine.services.SearchService;
+import searchengine.utils.SearchDeadline;
+import searchengine.utils.SearchTimeoutException;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Внутренние эндпоинты шарда, которые вызывает координатор распределённого поиска.
+ */
+@RestController
+@RequestMapping("/api/shard")
+@RequiredArgsConstructor
+public class ShardController {
+
+    private final SearchService searchService;
+    private final SearchAdmission admission;
+
+    @PostMapping("/stats")
+    public ResponseEntity<List<ShardSiteStats>> stats(@RequestBody ShardStatsRequest request) {
+        return admitted(() -> searchService.shardStats(request.getLemmas(), request.getSite()));
+    }
+
+    @PostMapping("/search")
+    public ResponseEntity<List<ShardSiteHits>> search(@RequestBody ShardSearchRequest request) {
+        return admitted(() -> searchService.shardSearch(request));
+    }
+
+    private <T> ResponseEntity<T> admitted(Supplier<T> action) {
+        if (!admission.tryAcquire()) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(admission.getRetryAfterSeconds()))
+                    .build();
+        }
+        SearchDeadline.start(admission.getDeadlineMs());
+        try {
+            return ResponseEntity.ok(action.get());
+        } catch (SearchTimeoutException | QueryTimeoutException | TransactionTimedOutException e) {
+            admission.onDeadlineExceeded();
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        } finally {
+            SearchDeadline.clear();
+            admission.release();
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package searchengine.crawler;
+
+/**
+ * Лимит одновременных запросов к одному сайту по схеме AIMD:
+ * быстрый успешный ответ увеличивает лимит примерно на единицу за «окно»,
+ * медленный ответ, ошибка соединения или 429/503 уменьшают его вдвое.
+ */
+public class AdaptiveConcurrencyLimiter {
+
+    private static final double DECREASE_FACTOR = 0.5;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final long targetLatencyMs;
+
+    private double limit;
+    private int inFlight;
+    private long lastDecreaseAt;
+
+    public AdaptiveConcurrencyLimiter(int minLimit, int maxLimit, long targetLatencyMs) {
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.targetLatencyMs = Math.max(1, targetLatencyMs);
+        this.limit = this.minLimit;
+    }
+
+    public synchronized void acquire() throws InterruptedException {
+        while (inFlight >= (int) limit) {
+            wait();
+        }
+        inFlight++;
+    }
+
+    /**
+     * Запрос завершён; statusCode = -1 означает ошибку соединения или таймаут,
+     * 0 — прочую ошибку без ответа сервера, которая о перегрузке не говорит.
+     */
+    public synchronized void release(long latencyMs, int statusCode) {
+        inFlight--;
+        boolean overloaded = statusCode < 0 || statusCode == 429 || statusCode == 503
+                || latencyMs > targetLatencyMs * 2;
+        long now = System.currentTimeMillis();
+        if (overloaded) {
+            // не режем лимит повторно ответами, которые были отправлены до прошлого снижения
+            if (now - lastDecreaseAt >= targetLatencyMs) {
+                limit = Math.max(minLimit, limit * DECREASE_FACTOR);
+                lastDecreaseAt = now;
+            }
+        } else if (latencyMs <= targetLatencyMs) {
+            limit = Math.min(maxLimit, limit + 1.0 / limit);
+        }
+        notifyAll();
+    }
+
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    public int getMaxLimit() {
+        return maxLimit;
+    }
+}
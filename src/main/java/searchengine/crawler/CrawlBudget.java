@@ -0,0 +1,71 @@
+package searchengine.crawler;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Бюджет обхода одного сайта: число страниц, объём загруженных данных и время.
+ * Значение null или неположительное означает отсутствие ограничения.
+ */
+public class CrawlBudget {
+
+    private final Integer maxPages;
+    private final Long maxBytes;
+    private final long maxDurationMs;
+    private volatile long startedAt = System.currentTimeMillis();
+
+    private final AtomicInteger pages = new AtomicInteger();
+    private final AtomicLong bytes = new AtomicLong();
+
+    public CrawlBudget(Integer maxPages, Long maxBytes, Integer maxDurationSeconds) {
+        this.maxPages = maxPages != null && maxPages > 0 ? maxPages : null;
+        this.maxBytes = maxBytes != null && maxBytes > 0 ? maxBytes : null;
+        this.maxDurationMs = maxDurationSeconds != null && maxDurationSeconds > 0
+                ? maxDurationSeconds * 1000L
+                : Long.MAX_VALUE;
+    }
+
+    /** Продолжение обхода: учитывает страницы, байты и время, израсходованные до остановки. */
+    public void restore(int pages, long bytes, long elapsedMs) {
+        this.pages.set(pages);
+        this.bytes.set(bytes);
+        this.startedAt = System.currentTimeMillis() - elapsedMs;
+    }
+
+    /** Резервирует одну страницу; false, если бюджет уже исчерпан. */
+    public boolean tryAcquirePage() {
+        if (isExhausted()) return false;
+        if (maxPages == null) {
+            pages.incrementAndGet();
+            return true;
+        }
+        return pages.getAndUpdate(p -> p < maxPages ? p + 1 : p) < maxPages;
+    }
+
+    public void addBytes(long n) {
+        bytes.addAndGet(n);
+    }
+
+    public boolean isExhausted() {
+        return exhaustedReason() != null;
+    }
+
+    public String exhaustedReason() {
+        if (maxPages != null && pages.get() >= maxPages) return "достигнут лимит страниц (" + maxPages + ")";
+        if (maxBytes != null && bytes.get() >= maxBytes) return "достигнут лимит объёма (" + maxBytes + " байт)";
+        if (getElapsedMs() >= maxDurationMs) return "истекло время обхода";
+        return null;
+    }
+
+    public int getPages() {
+        return pages.get();
+    }
+
+    public long getBytes() {
+        return bytes.get();
+    }
+
+    public long getElapsedMs() {
+        return System.currentTimeMillis() - startedAt;
+    }
+}
@@ -0,0 +1,67 @@
+package searchengine.crawler;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Контрольная точка обхода сайта: очередь URL (включая находящиеся в обработке),
+ * отпечатки посещённых адресов и израсходованный бюджет.
+ * Файл пишется во временный и атомарно подменяет прежний, так что при сбое
+ * на диске всегда остаётся последняя целая контрольная точка.
+ */
+public final class CrawlCheckpoint {
+
+    private static final int MAGIC = 0x53454350; // "SECP"
+    private static final int VERSION = 1;
+
+    private CrawlCheckpoint() {
+    }
+
+    public static void save(Path file, SiteCrawl crawl) throws IOException {
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        // FileOutputStream, а не Files.newOutputStream: канал NIO закрывается
+        // при прерывании потока, а контрольная точка пишется и при жёсткой остановке
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(tmp.toFile()), 64 * 1024))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(crawl.getSite().getId());
+            out.writeUTF(crawl.getRoot());
+            out.writeInt(crawl.getBudget().getPages());
+            out.writeLong(crawl.getBudget().getBytes());
+            out.writeLong(crawl.getBudget().getElapsedMs());
+            // посещённые — до очереди: URL, попавший в очередь между двумя записями,
+            // в худшем случае будет загружен дважды, но не потеряется
+            crawl.getVisited().writeTo(out);
+            crawl.getFrontier().writeTo(out);
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Восстанавливает состояние в только что созданный обход.
+     * false — файла нет или он записан для другого сайта; состояние обхода не меняется.
+     */
+    public static boolean restore(Path file, SiteCrawl crawl) throws IOException {
+        if (!Files.isRegularFile(file)) return false;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new FileInputStream(file.toFile()), 64 * 1024))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Неизвестный формат контрольной точки " + file);
+            }
+            if (in.readInt() != crawl.getSite().getId() || !in.readUTF().equals(crawl.getRoot())) {
+                return false;
+            }
+            int pages = in.readInt();
+            long bytes = in.readLong();
+            long elapsedMs = in.readLong();
+            crawl.getBudget().restore(pages, bytes, elapsedMs);
+            crawl.getVisited().readFrom(in);
+            crawl.getFrontier().readFrom(in);
+            return true;
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package searchengine.crawler;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Очередь URL для обхода сайта с ограниченной ёмкостью в памяти.
+ * Всё, что не помещается в память, дописывается в локальный файл
+ * и подчитывается обратно по мере освобождения очереди; порядок — FIFO.
+ * Выданные, но ещё не обработанные URL помнятся до {@link #done(Entry)},
+ * чтобы попасть в контрольную точку обхода.
+ */
+public class CrawlFrontier implements Closeable {
+
+    private final int capacity;
+    private final Path spillFile;
+    private final ArrayDeque<Entry> memory;
+    private final Set<Entry> inFlight = new HashSet<>();
+
+    private DataOutputStream spillOut;
+    private DataInputStream spillIn;
+    private long spilled;
+    private long unspilled;
+    private boolean closed;
+
+    public CrawlFrontier(int capacity, Path spillFile) {
+        this.capacity = Math.max(1, capacity);
+        this.spillFile = spillFile;
+        this.memory = new ArrayDeque<>(Math.min(this.capacity, 1024));
+    }
+
+    public synchronized void push(String url, int depth) throws IOException {
+        if (closed) return;
+        if (memory.size() < capacity && spilled == unspilled) {
+            memory.addLast(new Entry(url, depth));
+        } else {
+            spill(url, depth);
+        }
+        notifyAll();
+    }
+
+    /**
+     * Выдаёт следующий URL и помечает его как обрабатываемый — после обработки
+     * обязательно вызвать {@link #done(Entry)}. Возвращает null по таймауту
+     * или если обход завершён (см. {@link #isFinished()}).
+     */
+    public synchronized Entry poll(long timeoutMs) throws IOException, InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        while (true) {
+            if (memory.isEmpty() && spilled > unspilled) refill();
+            Entry e = memory.pollFirst();
+            if (e != null) {
+                inFlight.add(e);
+                return e;
+            }
+            long left = deadline - System.currentTimeMillis();
+            if (closed || inFlight.isEmpty() || left <= 0) return null;
+            wait(left);
+        }
+    }
+
+    public synchronized void done(Entry e) {
+        inFlight.remove(e);
+        notifyAll();
+    }
+
+    /** Возвращает невыполненный URL в начало очереди — например, при остановке обхода. */
+    public synchronized void putBack(Entry e) {
+        if (inFlight.remove(e) && !closed) memory.addFirst(e);
+        notifyAll();
+    }
+
+    /** Очередь пуста и ни один URL не находится в обработке. */
+    public synchronized boolean isFinished() {
+        return closed || memory.isEmpty() && spilled == unspilled && inFlight.isEmpty();
+    }
+
+    /**
+     * Записывает всё содержимое очереди: сначала URL в обработке, затем
+     * находящиеся в памяти и в файле. Обход на время записи не останавливается,
+     * но новые URL ждут её окончания.
+     */
+    public synchronized void writeTo(DataOutputStream out) throws IOException {
+        out.writeLong(inFlight.size() + size());
+        for (Entry e : inFlight) writeEntry(out, e);
+        for (Entry e : memory) writeEntry(out, e);
+        if (spilled == unspilled) return;
+        spillOut.flush();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new FileInputStream(spillFile.toFile()), 64 * 1024))) {
+            for (long i = 0; i < unspilled; i++) readEntry(in);
+            for (long i = unspilled; i < spilled; i++) writeEntry(out, readEntry(in));
+        }
+    }
+
+    /** Дописывает в очередь URL, сохранённые {@link #writeTo}. */
+    public void readFrom(DataInputStream in) throws IOException {
+        long count = in.readLong();
+        for (long i = 0; i < count; i++) {
+            Entry e = readEntry(in);
+            push(e.getUrl(), e.getDepth());
+        }
+    }
+
+    public synchronized long size() {
+        return memory.size() + (spilled - unspilled);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        closed = true;
+        memory.clear();
+        notifyAll();
+        if (spillOut != null) spillOut.close();
+        if (spillIn != null) spillIn.close();
+        Files.deleteIfExists(spillFile);
+    }
+
+    private void spill(String url, int depth) throws IOException {
+        if (spillOut == null) {
+            Files.createDirectories(spillFile.toAbsolutePath().getParent());
+            spillOut = new DataOutputStream(new BufferedOutputStream(
+                    new FileOutputStream(spillFile.toFile(), false), 64 * 1024));
+        }
+        writeEntry(spillOut, new Entry(url, depth));
+        spilled++;
+    }
+
+    private void refill() throws IOException {
+        spillOut.flush();
+        if (spillIn == null) {
+            spillIn = new DataInputStream(new BufferedInputStream(
+                    new FileInputStream(spillFile.toFile()), 64 * 1024));
+        }
+        while (memory.size() < capacity && unspilled < spilled) {
+            memory.addLast(readEntry(spillIn));
+            unspilled++;
+        }
+    }
+
+    private static void writeEntry(DataOutputStream out, Entry e) throws IOException {
+        out.writeByte(e.getDepth());
+        out.writeUTF(e.getUrl());
+    }
+
+    private static Entry readEntry(DataInputStream in) throws IOException {
+        int depth = in.readByte();
+        return new Entry(in.readUTF(), depth);
+    }
+
+    @Getter
+    @RequiredArgsConstructor
+    public static class Entry {
+        private final String url;
+        private final int depth;
+    }
+}
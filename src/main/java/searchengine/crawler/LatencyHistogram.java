@@ -0,0 +1,37 @@
+package searchengine.crawler;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Гистограмма времени обработки страниц с шагом 1 мс до 60 с;
+ * всё, что дольше, попадает в последнюю корзину.
+ */
+public class LatencyHistogram {
+
+    private static final int MAX_MS = 60_000;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(MAX_MS + 1);
+
+    public void record(long millis) {
+        buckets.incrementAndGet((int) Math.max(0, Math.min(millis, MAX_MS)));
+    }
+
+    public long count() {
+        long total = 0;
+        for (int i = 0; i <= MAX_MS; i++) total += buckets.get(i);
+        return total;
+    }
+
+    /** Перцентиль в миллисекундах, p от 0 до 100. */
+    public long percentile(double p) {
+        long total = count();
+        if (total == 0) return 0;
+        long rank = (long) Math.ceil(total * p / 100.0);
+        long seen = 0;
+        for (int i = 0; i <= MAX_MS; i++) {
+            seen += buckets.get(i);
+            if (seen >= rank) return i;
+        }
+        return MAX_MS;
+    }
+}
@@ -0,0 +1,85 @@
+package searchengine.crawler;
+
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+
+import java.util.function.IntSupplier;
+
+/**
+ * Документные частоты лемм сайта, накапливаемые в памяти за время полного обхода.
+ * Строка lemma создаётся один раз при первой встрече термина (её id нужен для idx),
+ * а частоты записываются в БД одним пакетом в конце обхода.
+ * Карты разбиты на полосы по termId, чтобы задачи обхода не ждали друг друга.
+ */
+public class LemmaAggregator {
+
+    private static final int STRIPES = 64;
+
+    private final Stripe[] stripes = new Stripe[STRIPES];
+    private final IntOpenHashSet pages = new IntOpenHashSet();
+
+    public LemmaAggregator() {
+        for (int i = 0; i < STRIPES; i++) stripes[i] = new Stripe();
+    }
+
+    /** false, если леммы страницы уже учтены в этом обходе. */
+    public boolean markPage(int pageId) {
+        synchronized (pages) {
+            return pages.add(pageId);
+        }
+    }
+
+    /**
+     * id строки lemma для термина; при первой встрече создаёт её через create.
+     * Заодно увеличивает документную частоту термина на 1.
+     */
+    public int lemmaIdAndCount(int termId, IntSupplier create) {
+        Stripe s = stripes[Math.floorMod(termId, STRIPES)];
+        synchronized (s) {
+            int id = s.lemmaIds.get(termId);
+            if (id == 0) {
+                id = create.getAsInt();
+                s.lemmaIds.put(termId, id);
+            }
+            s.frequencies.addTo(termId, 1);
+            return id;
+        }
+    }
+
+    /** Продолжение обхода: термин уже имеет строку lemma, частота не увеличивается. */
+    public void seed(int termId, int lemmaId) {
+        Stripe s = stripes[Math.floorMod(termId, STRIPES)];
+        synchronized (s) {
+            s.lemmaIds.put(termId, lemmaId);
+        }
+    }
+
+    public void forEach(Consumer consumer) {
+        for (Stripe s : stripes) {
+            synchronized (s) {
+                s.lemmaIds.int2IntEntrySet().forEach(e ->
+                        consumer.accept(e.getIntKey(), e.getIntValue(), s.frequencies.get(e.getIntKey())));
+            }
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (Stripe s : stripes) {
+            synchronized (s) {
+                size += s.lemmaIds.size();
+            }
+        }
+        return size;
+    }
+
+    @FunctionalInterface
+    public interface Consumer {
+        void accept(int termId, int lemmaId, int frequency);
+    }
+
+    private static class Stripe {
+        private final Int2IntOpenHashMap lemmaIds = new Int2IntOpenHashMap();
+        private final Int2IntOpenHashMap frequencies = new Int2IntOpenHashMap();
+    }
+}
@@ -0,0 +1,79 @@
+package searchengine.crawler;
+
+import org.jsoup.nodes.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import searchengine.model.PageEntity;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+/**
+ * Срок следующего посещения страницы. Частота изменений оценивается по
+ * посещениям: изменившийся отпечаток текста означает как минимум одно изменение
+ * за прошедшее время, и оценка (изменений в сутки) сглаживается скользящим средним.
+ * Интервал обратно пропорционален частоте и важности страницы — числу входящих
+ * ссылок и близости к главной — и ограничен min/max интервалами.
+ */
+@Component
+public class RevisitPolicy {
+
+    private static final double MINUTES_PER_DAY = 24 * 60;
+
+    @Value("${revisit.min-interval-minutes:5}")
+    private long minIntervalMinutes;
+
+    @Value("${revisit.initial-interval-hours:24}")
+    private long initialIntervalHours;
+
+    @Value("${revisit.max-interval-hours:168}")
+    private long maxIntervalHours;
+
+    @Value("${revisit.change-rate-smoothing:0.3}")
+    private double smoothing;
+
+    /** Отпечаток видимого текста: разметка, скрипты и атрибуты на него не влияют. */
+    public static long fingerprint(Document doc) {
+        return VisitedSet.fingerprint(doc.text());
+    }
+
+    /** Отмечает посещение с данным отпечатком и назначает следующее. */
+    public void visited(PageEntity page, long contentHash, LocalDateTime now) {
+        if (page.getLastVisit() != null && page.getContentHash() != null) {
+            double days = Math.max(Duration.between(page.getLastVisit(), now).toMinutes(),
+                    Math.max(1, minIntervalMinutes)) / MINUTES_PER_DAY;
+            double observed = page.getContentHash() != contentHash ? 1 / days : 0;
+            Double previous = page.getChangeRate();
+            page.setChangeRate(previous == null ? observed : previous + smoothing * (observed - previous));
+        }
+        page.setContentHash(contentHash);
+        page.setLastVisit(now);
+        page.setNextVisit(now.plusMinutes(intervalMinutes(page)));
+    }
+
+    /** Страница не загрузилась: оценка не меняется, попытка — через обычный интервал. */
+    public void postpone(PageEntity page, LocalDateTime now) {
+        page.setNextVisit(now.plusMinutes(intervalMinutes(page)));
+    }
+
+    long intervalMinutes(PageEntity page) {
+        long min = minIntervalMinutes;
+        long max = Math.max(min, maxIntervalHours * 60);
+        double minutes;
+        if (page.getChangeRate() == null) {
+            minutes = initialIntervalHours * 60 / importance(page);
+        } else {
+            // не реже одного изменения за максимальный интервал
+            double rate = Math.max(page.getChangeRate(), MINUTES_PER_DAY / max);
+            minutes = MINUTES_PER_DAY / (rate * importance(page));
+        }
+        return Math.max(min, Math.min(max, Math.round(minutes)));
+    }
+
+    /** 1 для глубокой страницы без ссылок на неё, больше — для главной и часто упоминаемых. */
+    static double importance(PageEntity page) {
+        int inlinks = page.getInlinks() == null ? 0 : page.getInlinks();
+        int depth = page.getDepth() == null ? 0 : page.getDepth();
+        return 1 + Math.log1p(inlinks) / (1 + depth);
+    }
+}
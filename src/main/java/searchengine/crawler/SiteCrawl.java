@@ -0,0 +1,49 @@
+package searchengine.crawler;
+
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import searchengine.model.SiteEntity;
+import searchengine.services.IndexingProgress;
+
+/**
+ * Состояние обхода одного сайта, общее для всех его задач.
+ */
+@Getter
+@RequiredArgsConstructor
+public class SiteCrawl {
+    private final SiteEntity site;
+    private final String root;
+    private final AdaptiveConcurrencyLimiter limiter;
+    private final CrawlBudget budget;
+    private final CrawlFrontier frontier;
+    private final IndexingProgress.SiteProgress progress;
+    /** null, если частоты лемм обновляются постранично. */
+    private final LemmaAggregator lemmaAggregator;
+    /** Обход продолжен с контрольной точки: страницы сайта уже могут быть в БД. */
+    private final boolean resumed;
+    private final VisitedSet visited = new VisitedSet();
+    /** Число ссылок на URL с обойдённых страниц, по отпечатку адреса. */
+    @Getter(AccessLevel.NONE)
+    private final Long2IntOpenHashMap inlinks = new Long2IntOpenHashMap();
+    private volatile boolean cancelled;
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public void addInlink(String url) {
+        long fp = VisitedSet.fingerprint(url);
+        synchronized (inlinks) {
+            inlinks.addTo(fp, 1);
+        }
+    }
+
+    public int inlinks(String url) {
+        long fp = VisitedSet.fingerprint(url);
+        synchronized (inlinks) {
+            return inlinks.get(fp);
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package searchengine.crawler;
+
+import org.springframework.stereotype.Component;
+import searchengine.config.Site;
+import searchengine.config.SitesList;
+
+import java.net.IDN;
+import java.net.URI;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Приведение URL к каноническому виду перед проверкой «уже посещён» и сохранением:
+ * схема и хост в нижнем регистре (IDN-хост — в punycode), без портов по умолчанию, без фрагмента и точечных
+ * сегментов, без хвостового слэша (кроме корня), без параметров отслеживания,
+ * остальные параметры отсортированы. По умолчанию отбрасываются только рекламные
+ * метки; сайт может добавить свои параметры в tracking-params своей записи. Ссылки на заведомо двоичные файлы
+ * отсекаются до загрузки.
+ */
+@Component
+public class UrlCanonicalizer {
+
+    /** Ограничение длины пути с запросом: столбец page.path — VARCHAR(255). */
+    public static final int MAX_PATH_LENGTH = 255;
+
+    private static final List<String> DEFAULT_TRACKING_PARAMS = List.of(
+            "utm_*", "gclid", "fbclid", "yclid", "ysclid", "_openstat", "mc_*");
+
+    private static final Set<String> BINARY_EXTENSIONS = Set.of(
+            "jpg", "jpeg", "png", "gif", "webp", "svg", "ico", "bmp", "tif", "tiff", "avif",
+            "pdf", "doc", "docx", "xls", "xlsx", "ppt", "pptx", "odt", "ods", "rtf",
+            "zip", "rar", "7z", "gz", "tgz", "tar", "bz2", "xz",
+            "exe", "msi", "dmg", "iso", "apk", "bin",
+            "mp3", "mp4", "m4a", "avi", "mov", "mkv", "wav", "ogg", "webm", "flv", "wmv",
+            "woff", "woff2", "ttf", "eot", "otf", "css", "js", "json", "xml", "rss", "txt", "csv");
+
+    /** Authority, которое URI не разобрал на хост и порт: [userinfo@]host[:port]. */
+    private static final Pattern AUTHORITY = Pattern.compile("(?:[^@]*@)?([^@:\\[\\]]+)(?::(\\d{1,5}))?");
+
+    private final SitesList sitesList;
+    private final TrackingParams common = new TrackingParams();
+    /** Общий список вместе с параметрами сайта, по url из конфигурации. */
+    private final Map<String, TrackingParams> bySite = new ConcurrentHashMap<>();
+
+    public UrlCanonicalizer(SitesList sitesList) {
+        this.sitesList = sitesList;
+        common.addAll(Optional.ofNullable(sitesList.getTrackingParams()).orElse(DEFAULT_TRACKING_PARAMS));
+    }
+
+    /** Канонический URL или null, если адрес не http(s) или не разбирается. */
+    public String canonicalize(String url) {
+        if (url == null || url.isBlank()) return null;
+        URI uri;
+        try {
+            uri = new URI(url.trim().replace(" ", "%20")).normalize();
+        } catch (Exception e) {
+            return null;
+        }
+        String scheme = uri.getScheme() == null ? null : uri.getScheme().toLowerCase(Locale.ROOT);
+        if (!"http".equals(scheme) && !"https".equals(scheme)) return null;
+        String host = asciiHost(uri);
+        if (host == null) return null;
+
+        int port = uri.getPort();
+        if (uri.getHost() == null) {
+            Matcher m = AUTHORITY.matcher(uri.getAuthority());
+            port = m.matches() && m.group(2) != null ? Integer.parseInt(m.group(2)) : -1;
+        }
+        boolean defaultPort = port == -1 || port == 80 && scheme.equals("http") || port == 443 && scheme.equals("https");
+
+        String path = uri.getRawPath() == null ? "" : uri.getRawPath().replaceAll("/{2,}", "/");
+        if (path.startsWith("/..")) path = "/";
+        path = path.replaceAll("/+$", "");
+        if (path.isEmpty()) path = "/";
+
+        String query = canonicalQuery(uri.getRawQuery(), trackingParams(host));
+        String pathAndQuery = query.isEmpty() ? path : path + "?" + query;
+        if (pathAndQuery.length() > MAX_PATH_LENGTH) return null;
+
+        return scheme + "://" + host + (defaultPort ? "" : ":" + port) + pathAndQuery;
+    }
+
+    /** Схема, хост и порт канонического URL, без пути. */
+    public String origin(String url) {
+        String canonical = canonicalize(url);
+        if (canonical == null) return null;
+        int slash = canonical.indexOf('/', canonical.indexOf("://") + 3);
+        return slash < 0 ? canonical : canonical.substring(0, slash);
+    }
+
+    /** false для ссылок на изображения, документы, архивы и прочие не-HTML ресурсы. */
+    public boolean isFetchable(String canonicalUrl) {
+        String path = URI.create(canonicalUrl).getRawPath();
+        if (path == null) return true;
+        int slash = path.lastIndexOf('/');
+        int dot = path.lastIndexOf('.');
+        if (dot <= slash) return true;
+        return !BINARY_EXTENSIONS.contains(path.substring(dot + 1).toLowerCase(Locale.ROOT));
+    }
+
+    private String canonicalQuery(String rawQuery, TrackingParams tracking) {
+        if (rawQuery == null || rawQuery.isEmpty()) return "";
+        List<String> kept = new ArrayList<>();
+        for (String pair : rawQuery.split("&")) {
+            if (pair.isEmpty()) continue;
+            int eq = pair.indexOf('=');
+            String name = (eq < 0 ? pair : pair.substring(0, eq)).toLowerCase(Locale.ROOT);
+            if (tracking.matches(name)) continue;
+            kept.add(pair);
+        }
+        Collections.sort(kept);
+        return String.join("&", kept);
+    }
+
+    private TrackingParams trackingParams(String host) {
+        List<Site> sites = sitesList.getSites();
+        if (sites == null) return common;
+        for (Site site : sites) {
+            if (site.getTrackingParams() == null || site.getTrackingParams().isEmpty() || site.getUrl() == null) continue;
+            if (!host.equals(hostOf(site.getUrl()))) continue;
+            return bySite.computeIfAbsent(site.getUrl(), k -> {
+                TrackingParams params = new TrackingParams();
+                params.addAll(common);
+                params.addAll(site.getTrackingParams());
+                return params;
+            });
+        }
+        return common;
+    }
+
+    private static String hostOf(String url) {
+        try {
+            return asciiHost(URI.create(url.trim()));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Хост в нижнем регистре и в ASCII-виде. Для хоста с кириллицей или «_»
+     * URI.getHost() возвращает null — тогда хост берётся из authority.
+     */
+    private static String asciiHost(URI uri) {
+        String host = uri.getHost();
+        if (host == null) {
+            if (uri.getAuthority() == null) return null;
+            Matcher m = AUTHORITY.matcher(uri.getAuthority());
+            if (!m.matches()) return null;
+            host = m.group(1);
+        }
+        try {
+            host = IDN.toASCII(host, IDN.ALLOW_UNASSIGNED);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        host = host.toLowerCase(Locale.ROOT).replaceAll("\\.$", "");
+        return host.isEmpty() ? null : host;
+    }
+
+    /** Имена параметров и префиксы (из записей с * на конце). */
+    private static class TrackingParams {
+        private final Set<String> names = new HashSet<>();
+        private final List<String> prefixes = new ArrayList<>();
+
+        void addAll(List<String> params) {
+            for (String p : params) {
+                String name = p.toLowerCase(Locale.ROOT).trim();
+                if (name.endsWith("*")) prefixes.add(name.substring(0, name.length() - 1));
+                else names.add(name);
+            }
+        }
+
+        void addAll(TrackingParams other) {
+            names.addAll(other.names);
+            prefixes.addAll(other.prefixes);
+        }
+
+        boolean matches(String name) {
+            if (names.contains(name)) return true;
+            for (String prefix : prefixes) {
+                if (name.startsWith(prefix)) return true;
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package searchengine.crawler;
+
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Множество посещённых URL, хранящее только 64-битные отпечатки (FNV-1a),
+ * а не сами строки: около 8 байт на адрес вместо сотни.
+ */
+public class VisitedSet {
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final LongOpenHashSet fingerprints = new LongOpenHashSet();
+
+    public synchronized boolean add(String url) {
+        return fingerprints.add(fingerprint(url));
+    }
+
+    public synchronized boolean contains(String url) {
+        return fingerprints.contains(fingerprint(url));
+    }
+
+    public synchronized int size() {
+        return fingerprints.size();
+    }
+
+    public synchronized void writeTo(DataOutputStream out) throws IOException {
+        out.writeInt(fingerprints.size());
+        for (LongIterator it = fingerprints.iterator(); it.hasNext(); ) {
+            out.writeLong(it.nextLong());
+        }
+    }
+
+    public synchronized void readFrom(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        fingerprints.ensureCapacity(fingerprints.size() + count);
+        for (int i = 0; i < count; i++) {
+            fingerprints.add(in.readLong());
+        }
+    }
+
+    public static long fingerprint(String url) {
+        long h = FNV_OFFSET;
+        for (byte b : url.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b & 0xff;
+            h *= FNV_PRIME;
+        }
+        return h;
+    }
+}
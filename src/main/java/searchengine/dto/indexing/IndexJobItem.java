@@ -0,0 +1,14 @@
+package searchengine.dto.indexing;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class IndexJobItem {
+    private String url;
+    private String status;
+    private String error;
+}
@@ -0,0 +1,17 @@
+package searchengine.dto.indexing;
+
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class IndexJobResponse {
+    private boolean result;
+    private String jobId;
+    private String status;
+    private long createdAt;
+    private int total;
+    private int done;
+    private int failed;
+    private List<IndexJobItem> items;
+}
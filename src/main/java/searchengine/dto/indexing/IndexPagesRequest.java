@@ -0,0 +1,10 @@
+package searchengine.dto.indexing;
+
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class IndexPagesRequest {
+    private List<String> urls;
+}
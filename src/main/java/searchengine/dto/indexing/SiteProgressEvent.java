@@ -0,0 +1,17 @@
+package searchengine.dto.indexing;
+
+import lombok.Data;
+
+@Data
+public class SiteProgressEvent {
+    private String url;
+    private String name;
+    private String status;
+    private long pagesFetched;
+    private long pagesQueued;
+    private long pagesFailed;
+    private long lemmasWritten;
+    private long bytes;
+    private double pagesPerSecond;
+    private String error;
+}
@@ -0,0 +1,34 @@
+package searchengine.dto.search;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Счётчики совпадений по всей выдаче, а не только по возвращённой странице:
+ * по сайтам — всегда, по коду ответа и разделу сайта — если запрошены.
+ */
+@Data
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class SearchFacets {
+    private final Map<String, Integer> sites = new TreeMap<>();
+    private Map<String, Integer> codes;
+    private Map<String, Integer> sections;
+
+    public SearchFacets(boolean detailed) {
+        if (detailed) {
+            codes = new TreeMap<>();
+            sections = new TreeMap<>();
+        }
+    }
+
+    public void add(ShardSiteHits hits) {
+        if (hits.getMatched() > 0) sites.merge(hits.getSite(), hits.getMatched(), Integer::sum);
+        if (codes != null && hits.getCodes() != null) hits.getCodes().forEach((k, v) -> codes.merge(k, v, Integer::sum));
+        if (sections != null && hits.getSections() != null) {
+            hits.getSections().forEach((k, v) -> sections.merge(k, v, Integer::sum));
+        }
+    }
+}
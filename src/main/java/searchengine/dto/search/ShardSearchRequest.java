@@ -0,0 +1,25 @@
+package searchengine.dto.search;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Запрос к шарду: исходная строка запроса (шард разбирает булево выражение сам),
+ * леммы для подсветки и для каждого сайта — леммы, участвующие в поиске
+ * после глобального фильтра частоты. facets — нужны ли счётчики по коду ответа и разделу.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ShardSearchRequest {
+    private String query;
+    private Set<String> queryLemmas;
+    private Map<String, List<String>> lemmasBySite;
+    private int topK;
+    private boolean facets;
+}
@@ -0,0 +1,26 @@
+package searchengine.dto.search;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Лучшие совпадения сайта на шарде. relevance в hits — абсолютная,
+ * maxAbsRelevance — максимум по всем совпадениям сайта на шарде.
+ * matched — число всех совпавших страниц сайта; codes и sections —
+ * фасеты по коду ответа и разделу, null, если они не запрашивались.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ShardSiteHits {
+    private String site;
+    private double maxAbsRelevance;
+    private List<SearchResultDto> hits;
+    private int matched;
+    private Map<String, Integer> codes;
+    private Map<String, Integer> sections;
+}
@@ -0,0 +1,19 @@
+package searchengine.dto.search;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+/**
+ * Локальная статистика сайта на шарде: число страниц и частоты лемм запроса.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ShardSiteStats {
+    private String site;
+    private int pages;
+    private Map<String, Integer> frequencies;
+}
@@ -0,0 +1,16 @@
+package searchengine.dto.search;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ShardedSearchResult {
+    private List<SearchResultDto> results;
+    private int shardsTotal;
+    private List<String> failedShards;
+}
@@ -0,0 +1,22 @@
+package searchengine.model;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "cluster_member")
+@Getter
+@Setter
+@NoArgsConstructor
+public class ClusterMemberEntity {
+    @Id
+    @Column(name = "node_id")
+    private String nodeId;
+
+    private LocalDateTime heartbeatAt;
+    private LocalDateTime expiresAt;
+}
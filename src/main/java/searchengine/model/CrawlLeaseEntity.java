@@ -0,0 +1,23 @@
+package searchengine.model;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "crawl_lease")
+@Getter
+@Setter
+@NoArgsConstructor
+public class CrawlLeaseEntity {
+    @Id
+    @Column(name = "partition_no")
+    private Integer partitionNo;
+
+    private String owner;
+    private LocalDateTime heartbeatAt;
+    private LocalDateTime expiresAt;
+}
@@ -24,6 +24,10 @@ public class IndexEntity {
 
     @Column(name = "rank_value", nullable = false)
     private float rank;
+
+    /** Сайт страницы, копия page.site_id: ключ секционирования idx по сайтам. */
+    @Column(name = "site_id", nullable = false)
+    private Integer siteId;
 }
 
 
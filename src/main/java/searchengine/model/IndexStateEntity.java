@@ -0,0 +1,22 @@
+package searchengine.model;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+@Entity
+@Table(name = "index_state")
+@Getter
+@Setter
+@NoArgsConstructor
+public class IndexStateEntity {
+    public static final int SINGLETON_ID = 1;
+
+    @Id
+    private Integer id;
+    private long generation;
+}
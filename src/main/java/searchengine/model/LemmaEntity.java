@@ -9,9 +9,12 @@ import java.util.List;
 
 
 @Entity
-@Table(name = "lemma", uniqueConstraints = @UniqueConstraint(columnNames = {"site_id", "lemma"}))
+@Table(name = "lemma", uniqueConstraints = @UniqueConstraint(name = LemmaEntity.UNIQUE_SITE_TERM,
+        columnNames = {"site_id", "term_id"}))
 @Getter @Setter @NoArgsConstructor
 public class LemmaEntity {
+    public static final String UNIQUE_SITE_TERM = "uk_lemma_site_term";
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Integer id;
@@ -23,7 +26,8 @@ public class LemmaEntity {
     @OneToMany(mappedBy = "lemma", cascade = CascadeType.ALL, orphanRemoval = true)
     private List<IndexEntity> indices = new ArrayList<>();
 
-    private String lemma;
+    @Column(name = "term_id", nullable = false)
+    private int termId;
     private int frequency;
 }
 
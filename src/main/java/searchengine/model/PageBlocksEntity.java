@@ -0,0 +1,34 @@
+package searchengine.model;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import javax.persistence.*;
+
+/**
+ * Отпечатки текстовых блоков страницы, из которых собирается статистика
+ * шаблонных блоков сайта. Хранятся отдельно от page, чтобы статистику
+ * можно было восстановить после перезапуска без разбора HTML.
+ */
+@Entity
+@Table(name = "page_blocks", uniqueConstraints = @UniqueConstraint(columnNames = {"site_id", "path"}))
+@Getter
+@Setter
+@NoArgsConstructor
+public class PageBlocksEntity {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Integer id;
+
+    @Column(name = "site_id", nullable = false)
+    private Integer siteId;
+
+    @Column(nullable = false)
+    private String path;
+
+    /** Различающиеся отпечатки блоков страницы, по 8 байт на отпечаток. */
+    @Lob
+    @Column(nullable = false)
+    private byte[] hashes;
+}
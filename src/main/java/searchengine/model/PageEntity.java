@@ -6,11 +6,13 @@ import lombok.NoArgsConstructor;
 import lombok.Setter;
 
 import javax.persistence.*;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 
 @Entity
-@Table(name = "page", uniqueConstraints = @UniqueConstraint(columnNames = {"site_id", "path"}))
+@Table(name = "page", uniqueConstraints = @UniqueConstraint(columnNames = {"site_id", "path"}),
+        indexes = @Index(name = "idx_page_next_visit", columnList = "site_id, next_visit"))
 @Getter
 @Setter
 @NoArgsConstructor
@@ -31,4 +33,24 @@ public class PageEntity {
 
     @Column(columnDefinition = "MEDIUMTEXT")
     private String content;
+
+    /** Отпечаток текста страницы при последнем посещении. */
+    @Column(name = "content_hash")
+    private Long contentHash;
+
+    /** Глубина от главной страницы при обходе. */
+    private Integer depth;
+
+    /** Число ссылок на страницу с других страниц сайта за последний полный обход. */
+    private Integer inlinks;
+
+    /** Оценка числа изменений в сутки, скользящее среднее по посещениям. */
+    @Column(name = "change_rate")
+    private Double changeRate;
+
+    @Column(name = "last_visit")
+    private LocalDateTime lastVisit;
+
+    @Column(name = "next_visit")
+    private LocalDateTime nextVisit;
 }
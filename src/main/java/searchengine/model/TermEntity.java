@@ -0,0 +1,21 @@
+package searchengine.model;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import javax.persistence.*;
+
+@Entity
+@Table(name = "term", uniqueConstraints = @UniqueConstraint(columnNames = {"lemma"}))
+@Getter
+@Setter
+@NoArgsConstructor
+public class TermEntity {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Integer id;
+
+    @Column(nullable = false)
+    private String lemma;
+}
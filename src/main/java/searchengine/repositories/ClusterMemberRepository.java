@@ -0,0 +1,21 @@
+package searchengine.repositories;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import searchengine.model.ClusterMemberEntity;
+
+import javax.transaction.Transactional;
+import java.time.LocalDateTime;
+
+public interface ClusterMemberRepository extends JpaRepository<ClusterMemberEntity, String> {
+
+    @Query("select count(m) from ClusterMemberEntity m where m.expiresAt > :now")
+    long countLive(@Param("now") LocalDateTime now);
+
+    @Transactional
+    @Modifying
+    @Query("delete from ClusterMemberEntity m where m.expiresAt < :now")
+    int deleteExpired(@Param("now") LocalDateTime now);
+}
@@ -0,0 +1,39 @@
+package searchengine.repositories;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import searchengine.model.CrawlLeaseEntity;
+
+import javax.transaction.Transactional;
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface CrawlLeaseRepository extends JpaRepository<CrawlLeaseEntity, Integer> {
+
+    @Transactional
+    @Modifying
+    @Query("update CrawlLeaseEntity l set l.owner = :node, l.heartbeatAt = :now, l.expiresAt = :expires " +
+            "where l.partitionNo = :partition and (l.owner is null or l.owner = :node or l.expiresAt < :now)")
+    int claim(@Param("partition") int partition, @Param("node") String node,
+              @Param("now") LocalDateTime now, @Param("expires") LocalDateTime expires);
+
+    @Transactional
+    @Modifying
+    @Query("update CrawlLeaseEntity l set l.heartbeatAt = :now, l.expiresAt = :expires " +
+            "where l.owner = :node and l.expiresAt >= :now")
+    int renew(@Param("node") String node, @Param("now") LocalDateTime now, @Param("expires") LocalDateTime expires);
+
+    @Transactional
+    @Modifying
+    @Query("update CrawlLeaseEntity l set l.owner = null, l.expiresAt = null " +
+            "where l.partitionNo = :partition and l.owner = :node")
+    int release(@Param("partition") int partition, @Param("node") String node);
+
+    @Query("select l.partitionNo from CrawlLeaseEntity l where l.owner is null or l.expiresAt < :now")
+    List<Integer> findClaimable(@Param("now") LocalDateTime now);
+
+    @Query("select l.partitionNo from CrawlLeaseEntity l where l.owner = :node and l.expiresAt > :now")
+    List<Integer> findHeld(@Param("node") String node, @Param("now") LocalDateTime now);
+}
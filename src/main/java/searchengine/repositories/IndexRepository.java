@@ -33,4 +33,17 @@ public interface IndexRepository extends JpaRepository<IndexEntity, Integer> {
 
     List<IndexEntity> findByLemma(LemmaEntity lemma);
 
+    @Query("select i.page.id as pageId, i.rank as rank from IndexEntity i"
+            + " where i.siteId = :siteId and i.lemma = :lemma")
+    List<PagePosting> findPostingsByLemma(@Param("siteId") int siteId, @Param("lemma") LemmaEntity lemma);
+
+    @Query("select i.page.id from IndexEntity i where i.siteId = :siteId and i.lemma = :lemma")
+    List<Integer> findPageIdsByLemma(@Param("siteId") int siteId, @Param("lemma") LemmaEntity lemma);
+
+    interface PagePosting {
+        int getPageId();
+
+        float getRank();
+    }
+
 }
@@ -0,0 +1,19 @@
+package searchengine.repositories;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import searchengine.model.IndexStateEntity;
+
+import javax.transaction.Transactional;
+
+public interface IndexStateRepository extends JpaRepository<IndexStateEntity, Integer> {
+
+    @Transactional
+    @Modifying
+    @Query("update IndexStateEntity s set s.generation = s.generation + 1 where s.id = 1")
+    int bumpGeneration();
+
+    @Query("select s.generation from IndexStateEntity s where s.id = 1")
+    Long findGeneration();
+}
@@ -3,12 +3,19 @@ package searchengine.repositories;
 import org.springframework.data.jpa.repository.JpaRepository;
 import searchengine.model.LemmaEntity;
 import searchengine.model.SiteEntity;
+import java.util.Collection;
 import java.util.Optional;
 import java.util.List;
 
 public interface LemmaRepository extends JpaRepository<LemmaEntity, Integer> {
-    Optional<LemmaEntity> findFirstBySiteAndLemma(SiteEntity site, String lemma);
+    Optional<LemmaEntity> findFirstBySiteAndTermId(SiteEntity site, int termId);
+
+    List<LemmaEntity> findBySiteAndTermIdIn(SiteEntity site, Collection<Integer> termIds);
 
     List<LemmaEntity> findBySite(SiteEntity site);
+
+    long countBySite(SiteEntity site);
+
+    boolean existsBySite(SiteEntity site);
     void deleteAllBySite(SiteEntity site);
 }
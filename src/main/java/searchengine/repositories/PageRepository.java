@@ -1,9 +1,13 @@
 package searchengine.repositories;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import searchengine.model.PageEntity;
 import searchengine.model.SiteEntity;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
@@ -15,5 +19,30 @@ public interface PageRepository extends JpaRepository<PageEntity, Integer> {
 
     List<PageEntity> findBySite(SiteEntity site);
 
+    long countBySite(SiteEntity site);
+
+    @Query("select p.id from PageEntity p where p.site = :site")
+    List<Integer> findIdsBySite(@Param("site") SiteEntity site);
+
+    @Query("select p.id as id, p.code as code, p.path as path from PageEntity p where p.site = :site")
+    List<PageFacetRow> findFacetRowsBySite(@Param("site") SiteEntity site);
+
+    @Query("select p.id as id, p.code as code, p.path as path from PageEntity p"
+            + " where p.site = :site and p.id >= :fromId")
+    List<PageFacetRow> findFacetRowsBySiteFrom(@Param("site") SiteEntity site, @Param("fromId") int fromId);
+
+    /** Страницы, срок повторного посещения которых наступил; ещё не планировавшиеся — первыми. */
+    @Query("select p from PageEntity p where p.site = :site and (p.nextVisit is null or p.nextVisit <= :now)"
+            + " order by p.nextVisit")
+    List<PageEntity> findDueForRevisit(@Param("site") SiteEntity site, @Param("now") LocalDateTime now, Pageable pageable);
+
     void deleteAllBySite(SiteEntity site);
+
+    interface PageFacetRow {
+        int getId();
+
+        int getCode();
+
+        String getPath();
+    }
 }
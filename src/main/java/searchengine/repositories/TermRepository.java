@@ -0,0 +1,10 @@
+package searchengine.repositories;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import searchengine.model.TermEntity;
+
+import java.util.Optional;
+
+public interface TermRepository extends JpaRepository<TermEntity, Integer> {
+    Optional<TermEntity> findByLemma(String lemma);
+}
@@ -0,0 +1,229 @@
+package searchengine.services;
+
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.objects.Object2ObjectOpenHashMap;
+import lombok.RequiredArgsConstructor;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import searchengine.config.SitesList;
+import searchengine.crawler.VisitedSet;
+import searchengine.utils.LemmaFinder;
+
+import java.nio.ByteBuffer;
+import java.util.*;
+
+/**
+ * Выделение индексируемого содержимого страницы.
+ * Тело страницы режется на текстовые блоки (абзацы, пункты списков, ячейки, листовые div);
+ * для каждого сайта считается, на скольких страницах встречался блок с тем же текстом.
+ * Блоки, повторяющиеся на многих страницах (меню, подвалы, баннеры cookie), в индекс не попадают.
+ * Каждая страница (по пути) учитывается один раз: при повторной обработке её прежний
+ * вклад заменяется новым. Отпечатки блоков страниц хранятся в page_blocks, и после
+ * перезапуска статистика сайта восстанавливается оттуда при первом обращении.
+ * Заголовок страницы и h1–h6 индексируются с повышенным весом: их леммы
+ * добавляют к rank title-weight и heading-weight вместо 1.
+ */
+@Component
+@RequiredArgsConstructor
+public class ContentExtractor {
+
+    private static final Set<String> BLOCK_TAGS = Set.of(
+            "p", "li", "dd", "dt", "td", "th", "blockquote", "pre", "figcaption", "caption",
+            "div", "section", "article", "main", "header", "footer", "nav", "aside", "form", "ul", "ol", "table",
+            "h1", "h2", "h3", "h4", "h5", "h6");
+    private static final Set<String> SKIP_TAGS = Set.of("script", "style", "noscript", "template", "svg", "iframe");
+    private static final String HEADINGS = "h1, h2, h3, h4, h5, h6";
+
+    private final SitesList sitesList;
+    private final JdbcTemplate jdbcTemplate;
+    private final Int2ObjectOpenHashMap<SiteBlocks> sites = new Int2ObjectOpenHashMap<>();
+
+    /** Леммы страницы path с учётом весов полей и без шаблонных блоков сайта. */
+    public Map<String, Integer> lemmas(int siteId, String path, Document doc) {
+        LemmaFinder finder = LemmaFinder.getInstance();
+        Map<String, Integer> result = new HashMap<>();
+        addWeighted(result, finder.collectLemmas(doc.title()), titleWeight());
+
+        List<Element> blocks = new ArrayList<>();
+        if (doc.body() != null) collectBlocks(doc.body(), blocks);
+        Set<Element> template = templateBlocks(siteId, path, blocks);
+
+        StringBuilder headings = new StringBuilder();
+        StringBuilder body = new StringBuilder();
+        for (Element block : blocks) {
+            if (template.contains(block)) continue;
+            boolean heading = block.is(HEADINGS);
+            (heading ? headings : body).append(blockText(block)).append('\n');
+        }
+        addWeighted(result, finder.collectLemmas(headings.toString()), headingWeight());
+        addWeighted(result, finder.collectLemmas(body.toString()), 1);
+        return result;
+    }
+
+    public Map<String, Integer> lemmas(int siteId, String path, String html) {
+        return lemmas(siteId, path, Jsoup.parse(html));
+    }
+
+    /** Страница больше не отдаёт содержимое: её блоки перестают учитываться. */
+    public void removePage(int siteId, String path) {
+        SiteBlocks stats = siteBlocks(siteId);
+        long[] previous;
+        synchronized (stats) {
+            previous = stats.pages.remove(path);
+            if (previous != null) stats.subtract(previous);
+        }
+        if (previous != null) {
+            jdbcTemplate.update("delete from page_blocks where site_id = ? and path = ?", siteId, path);
+        }
+    }
+
+    public void clearSite(int siteId) {
+        synchronized (sites) {
+            sites.remove(siteId);
+        }
+        jdbcTemplate.update("delete from page_blocks where site_id = ?", siteId);
+    }
+
+    private void addWeighted(Map<String, Integer> target, Map<String, Integer> lemmas, int weight) {
+        lemmas.forEach((lemma, count) -> target.merge(lemma, count * weight, Integer::sum));
+    }
+
+    /**
+     * Листовые блоки и «собственный» текст блоков-контейнеров.
+     * Контейнер учитывается как отдельный блок, только если у него есть текст вне вложенных блоков.
+     */
+    private boolean collectBlocks(Element element, List<Element> out) {
+        boolean hasNestedBlocks = false;
+        for (Element child : element.children()) {
+            if (SKIP_TAGS.contains(child.normalName())) continue;
+            if (collectBlocks(child, out) || BLOCK_TAGS.contains(child.normalName())) hasNestedBlocks = true;
+        }
+        boolean block = BLOCK_TAGS.contains(element.normalName()) || element.normalName().equals("body");
+        if (block && (!hasNestedBlocks || !element.ownText().isBlank())) {
+            out.add(element);
+        }
+        return hasNestedBlocks || block;
+    }
+
+    private String blockText(Element block) {
+        if (!hasBlockChildren(block)) return block.text();
+        // у контейнера берём только текст вне вложенных блоков
+        StringBuilder sb = new StringBuilder(block.ownText());
+        for (Element child : block.children()) {
+            if (!BLOCK_TAGS.contains(child.normalName()) && !SKIP_TAGS.contains(child.normalName())
+                    && !hasBlockChildren(child)) {
+                sb.append(' ').append(child.text());
+            }
+        }
+        return sb.toString();
+    }
+
+    private boolean hasBlockChildren(Element element) {
+        for (Element child : element.children()) {
+            if (BLOCK_TAGS.contains(child.normalName()) || hasBlockChildren(child)) return true;
+        }
+        return false;
+    }
+
+    private Set<Element> templateBlocks(int siteId, String path, List<Element> blocks) {
+        Map<Element, Long> hashes = new IdentityHashMap<>();
+        LongOpenHashSet distinct = new LongOpenHashSet();
+        for (Element block : blocks) {
+            String text = blockText(block).toLowerCase(Locale.ROOT).replaceAll("\\s+", " ").trim();
+            if (text.isEmpty()) continue;
+            long h = VisitedSet.fingerprint(text);
+            hashes.put(block, h);
+            distinct.add(h);
+        }
+
+        long[] current = distinct.toLongArray();
+        Arrays.sort(current);
+
+        SiteBlocks stats = siteBlocks(siteId);
+        Set<Element> template = Collections.newSetFromMap(new IdentityHashMap<>());
+        boolean changed;
+        synchronized (stats) {
+            long[] previous = stats.pages.put(path, current);
+            changed = !Arrays.equals(previous, current);
+            if (changed) {
+                if (previous != null) stats.subtract(previous);
+                for (long h : current) stats.counts.addTo(h, 1);
+            }
+            int threshold = Math.max(minRepeats(), (int) Math.ceil(stats.pages.size() * templateRatio()));
+            hashes.forEach((block, h) -> {
+                if (stats.counts.get(h.longValue()) >= threshold) template.add(block);
+            });
+        }
+        if (changed) {
+            jdbcTemplate.update("insert into page_blocks (site_id, path, hashes) values (?, ?, ?) "
+                    + "on duplicate key update hashes = values(hashes)", siteId, path, toBytes(current));
+        }
+        return template;
+    }
+
+    /** Статистика сайта; при первом обращении после запуска читается из page_blocks. */
+    private SiteBlocks siteBlocks(int siteId) {
+        SiteBlocks stats;
+        synchronized (sites) {
+            stats = sites.computeIfAbsent(siteId, k -> new SiteBlocks());
+        }
+        synchronized (stats) {
+            if (!stats.loaded) {
+                jdbcTemplate.query("select path, hashes from page_blocks where site_id = ?", rs -> {
+                    long[] pageHashes = fromBytes(rs.getBytes(2));
+                    stats.pages.put(rs.getString(1), pageHashes);
+                    for (long h : pageHashes) stats.counts.addTo(h, 1);
+                }, siteId);
+                stats.loaded = true;
+            }
+        }
+        return stats;
+    }
+
+    private static byte[] toBytes(long[] hashes) {
+        ByteBuffer buffer = ByteBuffer.allocate(hashes.length * Long.BYTES);
+        for (long h : hashes) buffer.putLong(h);
+        return buffer.array();
+    }
+
+    private static long[] fromBytes(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        long[] hashes = new long[bytes.length / Long.BYTES];
+        for (int i = 0; i < hashes.length; i++) hashes[i] = buffer.getLong();
+        return hashes;
+    }
+
+    private int titleWeight() {
+        return Optional.ofNullable(sitesList.getTitleWeight()).orElse(3);
+    }
+
+    private int headingWeight() {
+        return Optional.ofNullable(sitesList.getHeadingWeight()).orElse(2);
+    }
+
+    private int minRepeats() {
+        return Optional.ofNullable(sitesList.getBoilerplateMinRepeats()).orElse(3);
+    }
+
+    private double templateRatio() {
+        return Optional.ofNullable(sitesList.getBoilerplateRatio()).orElse(0.3);
+    }
+
+    private static class SiteBlocks {
+        private boolean loaded;
+        /** Отпечатки блоков каждой учтённой страницы, по пути. */
+        private final Map<String, long[]> pages = new Object2ObjectOpenHashMap<>();
+        private final Long2IntOpenHashMap counts = new Long2IntOpenHashMap();
+
+        private void subtract(long[] hashes) {
+            for (long h : hashes) {
+                if (counts.addTo(h, -1) <= 1) counts.remove(h);
+            }
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package searchengine.services;
+
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import org.springframework.stereotype.Service;
+
+import java.util.function.BiConsumer;
+
+/**
+ * Документные частоты лемм по сайтам в памяти: siteId → (termId → frequency).
+ * Обновляется вместе с таблицей lemma.
+ */
+@Service
+public class DocumentFrequencies {
+
+    private final Int2ObjectOpenHashMap<Int2IntOpenHashMap> bySite = new Int2ObjectOpenHashMap<>();
+
+    public synchronized void add(int siteId, int termId, int delta) {
+        Int2IntOpenHashMap site = bySite.computeIfAbsent(siteId, k -> new Int2IntOpenHashMap());
+        int value = site.addTo(termId, delta) + delta;
+        if (value <= 0) site.remove(termId);
+    }
+
+    public synchronized void set(int siteId, int termId, int frequency) {
+        Int2IntOpenHashMap site = bySite.computeIfAbsent(siteId, k -> new Int2IntOpenHashMap());
+        if (frequency > 0) site.put(termId, frequency);
+        else site.remove(termId);
+    }
+
+    public synchronized int get(int siteId, int termId) {
+        Int2IntOpenHashMap site = bySite.get(siteId);
+        return site == null ? 0 : site.get(termId);
+    }
+
+    /** Суммарная частота термина по всем сайтам. */
+    public synchronized int total(int termId) {
+        int sum = 0;
+        for (Int2IntOpenHashMap site : bySite.values()) sum += site.get(termId);
+        return sum;
+    }
+
+    public synchronized void clearSite(int siteId) {
+        bySite.remove(siteId);
+    }
+
+    public synchronized void clear() {
+        bySite.clear();
+    }
+
+    /** Обход всех сайтов под блокировкой; consumer не должен изменять карты. */
+    public synchronized void forEachSite(BiConsumer<Integer, Int2IntOpenHashMap> consumer) {
+        bySite.int2ObjectEntrySet().forEach(e -> consumer.accept(e.getIntKey(), e.getValue()));
+    }
+}
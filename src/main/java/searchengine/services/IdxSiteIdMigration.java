@@ -0,0 +1,54 @@
+package searchengine.services;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.sql.ResultSet;
+
+/**
+ * Заполнение idx.site_id в строках, записанных до появления колонки. ddl-auto
+ * добавляет её со значением 0 (или пустой, пока колонка допускает null), а все
+ * запросы к idx теперь содержат условие на site_id. Старые строки ищутся по
+ * значению — 0, null или сайт, не совпадающий с сайтом страницы, — и получают
+ * сайт своей страницы; строки без страницы удаляются. Затем колонка объявляется
+ * NOT NULL, если ещё не объявлена.
+ */
+@Service
+@DependsOn("entityManagerFactory")
+public class IdxSiteIdMigration {
+
+    private static final Logger logger = LoggerFactory.getLogger(IdxSiteIdMigration.class);
+
+    private static final String PAGE_SITE = "(select p.site_id from page p where p.id = idx.page_id)";
+    private static final String LEGACY_ROW = "site_id is null or site_id = 0 or site_id <> " + PAGE_SITE;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public IdxSiteIdMigration(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @PostConstruct
+    public void migrate() {
+        Boolean legacy = jdbcTemplate.query("select 1 from idx where " + LEGACY_ROW + " limit 1", ResultSet::next);
+        if (Boolean.TRUE.equals(legacy)) {
+            long started = System.currentTimeMillis();
+            int filled = jdbcTemplate.update("update idx set site_id = " + PAGE_SITE + " where " + LEGACY_ROW);
+            // строки без страницы в поиск всё равно не попадают
+            int orphans = jdbcTemplate.update("delete from idx where site_id is null or site_id = 0");
+            logger.info("Заполнен site_id у {} строк idx, удалено {} строк без страницы за {} мс",
+                    filled, orphans, System.currentTimeMillis() - started);
+        }
+
+        String nullable = jdbcTemplate.query("select is_nullable from information_schema.columns"
+                        + " where table_schema = schema() and lower(table_name) = 'idx' and lower(column_name) = 'site_id'",
+                rs -> rs.next() ? rs.getString(1) : null);
+        if ("YES".equalsIgnoreCase(nullable)) {
+            jdbcTemplate.execute("alter table idx modify site_id int not null");
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package searchengine.services;
+
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import searchengine.model.IndexStateEntity;
+import searchengine.repositories.IndexStateRepository;
+
+import javax.annotation.PostConstruct;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Поколение индекса: счётчик в БД, который увеличивается в начале и в конце
+ * каждой записи в индекс (обход сайта, переиндексация страницы). Снимок
+ * состояния поиска действителен, только если его поколение совпадает с текущим.
+ */
+@Service
+public class IndexGeneration {
+
+    private final IndexStateRepository stateRepository;
+    private final AtomicInteger activeWriters = new AtomicInteger();
+
+    public IndexGeneration(IndexStateRepository stateRepository) {
+        this.stateRepository = stateRepository;
+    }
+
+    @PostConstruct
+    public void init() {
+        if (stateRepository.existsById(IndexStateEntity.SINGLETON_ID)) return;
+        IndexStateEntity state = new IndexStateEntity();
+        state.setId(IndexStateEntity.SINGLETON_ID);
+        try {
+            stateRepository.save(state);
+        } catch (DataIntegrityViolationException ignored) {
+            // строку одновременно создал другой узел
+        }
+    }
+
+    public long current() {
+        Long g = stateRepository.findGeneration();
+        return g == null ? 0 : g;
+    }
+
+    public void beginWrite() {
+        activeWriters.incrementAndGet();
+        stateRepository.bumpGeneration();
+    }
+
+    public void endWrite() {
+        stateRepository.bumpGeneration();
+        activeWriters.decrementAndGet();
+    }
+
+    public boolean isWriting() {
+        return activeWriters.get() > 0;
+    }
+}
@@ -0,0 +1,169 @@
+package searchengine.services;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import searchengine.config.SitesList;
+import searchengine.crawler.UrlCanonicalizer;
+import searchengine.dto.indexing.IndexJobItem;
+import searchengine.dto.indexing.IndexJobResponse;
+
+import javax.annotation.PreDestroy;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Пакетная асинхронная индексация страниц: список URL дедуплицируется
+ * по каноническому виду (…/a, …/a/ и HTTP://Host/a — одна страница),
+ * обрабатывается в общем пуле ограниченного размера, а статус задания
+ * с результатом по каждому URL доступен по его id.
+ */
+@Service
+public class IndexJobService {
+
+    public static final String PENDING = "PENDING";
+    public static final String RUNNING = "RUNNING";
+    public static final String DONE = "DONE";
+    public static final String FAILED = "FAILED";
+    public static final String REJECTED = "REJECTED";
+
+    private static final Logger logger = LoggerFactory.getLogger(IndexJobService.class);
+
+    private final IndexingServiceImpl indexingService;
+    private final SitesList sitesList;
+    private final UrlCanonicalizer urlCanonicalizer;
+    private final ExecutorService executor;
+    private final int maxBatchSize;
+    private final long retentionMs;
+    private final Map<String, Job> jobs = new ConcurrentHashMap<>();
+
+    public IndexJobService(IndexingServiceImpl indexingService,
+                           SitesList sitesList,
+                           UrlCanonicalizer urlCanonicalizer,
+                           @Value("${indexing-settings.index-page-parallelism:4}") int parallelism,
+                           @Value("${indexing-settings.index-page-max-batch:1000}") int maxBatchSize,
+                           @Value("${indexing-settings.index-job-retention-ms:3600000}") long retentionMs) {
+        this.indexingService = indexingService;
+        this.sitesList = sitesList;
+        this.urlCanonicalizer = urlCanonicalizer;
+        this.executor = Executors.newFixedThreadPool(Math.max(1, parallelism));
+        this.maxBatchSize = maxBatchSize;
+        this.retentionMs = retentionMs;
+    }
+
+    public String submit(List<String> urls) {
+        if (urls == null || urls.isEmpty()) {
+            throw new IllegalArgumentException("Список url пуст");
+        }
+        // канонический вид → первый присланный вариант адреса
+        Map<String, String> unique = new LinkedHashMap<>();
+        for (String url : urls) {
+            if (url == null || url.isBlank()) continue;
+            String trimmed = url.trim();
+            unique.putIfAbsent(Optional.ofNullable(urlCanonicalizer.canonicalize(trimmed)).orElse(trimmed), trimmed);
+        }
+        if (unique.isEmpty()) {
+            throw new IllegalArgumentException("Список url пуст");
+        }
+        if (unique.size() > maxBatchSize) {
+            throw new IllegalArgumentException("Слишком много url в одном задании, максимум " + maxBatchSize);
+        }
+
+        Job job = new Job(UUID.randomUUID().toString());
+        for (String url : unique.values()) {
+            IndexJobItem item = new IndexJobItem(url, PENDING, null);
+            job.items.put(url, item);
+            if (!inConfig(url)) {
+                item.setStatus(REJECTED);
+                item.setError("Данная страница находится за пределами сайтов, указанных в конфигурационном файле");
+                job.finished.incrementAndGet();
+                continue;
+            }
+            executor.submit(() -> process(job, item));
+        }
+        jobs.put(job.id, job);
+        logger.info("Задание индексации {} принято: {} url", job.id, unique.size());
+        return job.id;
+    }
+
+    public Optional<IndexJobResponse> status(String jobId) {
+        Job job = jobs.get(jobId);
+        if (job == null) return Optional.empty();
+
+        IndexJobResponse response = new IndexJobResponse();
+        response.setResult(true);
+        response.setJobId(job.id);
+        response.setCreatedAt(job.createdAt);
+        List<IndexJobItem> items = new ArrayList<>();
+        int done = 0;
+        int failed = 0;
+        for (IndexJobItem item : job.items.values()) {
+            synchronized (item) {
+                items.add(new IndexJobItem(item.getUrl(), item.getStatus(), item.getError()));
+                if (DONE.equals(item.getStatus())) done++;
+                if (FAILED.equals(item.getStatus()) || REJECTED.equals(item.getStatus())) failed++;
+            }
+        }
+        response.setItems(items);
+        response.setTotal(items.size());
+        response.setDone(done);
+        response.setFailed(failed);
+        response.setStatus(job.isFinished() ? DONE : RUNNING);
+        return Optional.of(response);
+    }
+
+    @Scheduled(fixedDelay = 60_000)
+    public void evictFinished() {
+        long border = System.currentTimeMillis() - retentionMs;
+        jobs.values().removeIf(job -> job.isFinished() && job.createdAt < border);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void process(Job job, IndexJobItem item) {
+        synchronized (item) {
+            item.setStatus(RUNNING);
+        }
+        boolean ok = true;
+        String error = null;
+        try {
+            indexingService.reindexPage(item.getUrl());
+        } catch (Exception e) {
+            ok = false;
+            error = Optional.ofNullable(e.getMessage()).orElse(e.toString());
+        }
+        synchronized (item) {
+            item.setStatus(ok ? DONE : FAILED);
+            item.setError(error);
+        }
+        job.finished.incrementAndGet();
+    }
+
+    private boolean inConfig(String url) {
+        return sitesList.getSites().stream()
+                .anyMatch(s -> Objects.nonNull(s.getUrl()) && url.startsWith(s.getUrl()));
+    }
+
+    private static class Job {
+        private final String id;
+        private final long createdAt = System.currentTimeMillis();
+        private final Map<String, IndexJobItem> items = new LinkedHashMap<>();
+        private final AtomicInteger finished = new AtomicInteger();
+
+        Job(String id) {
+            this.id = id;
+        }
+
+        boolean isFinished() {
+            return finished.get() >= items.size();
+        }
+    }
+}
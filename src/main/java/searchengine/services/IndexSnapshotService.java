@@ -0,0 +1,210 @@
+package searchengine.services;
+
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Снимок состояния поиска в памяти (словарь лемм и документные частоты по сайтам)
+ * в локальном бинарном файле. При старте файл отображается в память и проверяется:
+ * сигнатура, версия формата, CRC32 и поколение индекса. Если снимка нет или он
+ * устарел, состояние строится заново из БД.
+ *
+ * Снимок пишется, только когда в индекс никто не пишет (иначе он устарел бы
+ * сразу): по расписанию и в конце каждого обхода сайта. При непрерывной записи
+ * (долгие обходы, частые повторные посещения) он обновляется редко, и после
+ * перезапуска состояние чаще строится из БД.
+ *
+ * Формат: MAGIC, VERSION, generation, termCount, (id, len, utf8)*,
+ * siteCount, (siteId, count, (termId, frequency)*)*, crc32.
+ */
+@Service
+@RequiredArgsConstructor
+public class IndexSnapshotService {
+
+    private static final Logger logger = LoggerFactory.getLogger(IndexSnapshotService.class);
+    private static final int MAGIC = 0x53454958; // "SEIX"
+    private static final int VERSION = 1;
+
+    private final TermDictionary termDictionary;
+    private final DocumentFrequencies frequencies;
+    private final IndexGeneration generation;
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${index-snapshot.enabled:true}")
+    private boolean enabled;
+
+    @Value("${index-snapshot.path:data/index.snapshot}")
+    private String path;
+
+    private volatile long writtenGeneration = -1;
+
+    @PostConstruct
+    public void restore() {
+        long started = System.currentTimeMillis();
+        long current = generation.current();
+        if (enabled && load(current)) {
+            writtenGeneration = current;
+            logger.info("Состояние поиска восстановлено из снимка {} (поколение {}) за {} мс",
+                    path, current, System.currentTimeMillis() - started);
+            return;
+        }
+        rebuild();
+        logger.info("Состояние поиска построено из БД за {} мс", System.currentTimeMillis() - started);
+    }
+
+    public void rebuild() {
+        termDictionary.loadFromDatabase();
+        frequencies.clear();
+        jdbcTemplate.query("select site_id, term_id, frequency from lemma", (RowCallbackHandler) rs ->
+                frequencies.set(rs.getInt(1), rs.getInt(2), rs.getInt(3)));
+    }
+
+    @Scheduled(fixedDelayString = "${index-snapshot.interval-ms:300000}",
+            initialDelayString = "${index-snapshot.interval-ms:300000}")
+    public synchronized void writeIfStale() {
+        if (!enabled || generation.isWriting()) return;
+        long current = generation.current();
+        if (current == writtenGeneration) return;
+        try {
+            write(current);
+            writtenGeneration = current;
+        } catch (IOException e) {
+            logger.warn("Не удалось записать снимок состояния поиска: {}", e.toString());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        writeIfStale();
+    }
+
+    private void write(long gen) throws IOException {
+        long started = System.currentTimeMillis();
+        Path target = Path.of(path).toAbsolutePath();
+        Files.createDirectories(target.getParent());
+        Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+
+        CRC32 crc = new CRC32();
+        try (FileOutputStream file = new FileOutputStream(tmp.toFile())) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    new CheckedOutputStream(file, crc), 64 * 1024));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(gen);
+
+            // число терминов — по фактически записанным: словарь может пополняться во время обхода
+            ByteArrayOutputStream termsBuf = new ByteArrayOutputStream();
+            DataOutputStream termsOut = new DataOutputStream(termsBuf);
+            int[] termCount = new int[1];
+            IOException[] error = new IOException[1];
+            termDictionary.forEach((id, lemma) -> {
+                try {
+                    byte[] bytes = lemma.getBytes(StandardCharsets.UTF_8);
+                    termsOut.writeInt(id);
+                    termsOut.writeInt(bytes.length);
+                    termsOut.write(bytes);
+                    termCount[0]++;
+                } catch (IOException e) {
+                    error[0] = e;
+                }
+            });
+            if (error[0] != null) throw error[0];
+            out.writeInt(termCount[0]);
+            termsBuf.writeTo(out);
+
+            ByteArrayOutputStream sitesBuf = new ByteArrayOutputStream();
+            DataOutputStream sites = new DataOutputStream(sitesBuf);
+            int[] siteCount = new int[1];
+            frequencies.forEachSite((siteId, terms) -> {
+                try {
+                    sites.writeInt(siteId);
+                    sites.writeInt(terms.size());
+                    for (var e : terms.int2IntEntrySet()) {
+                        sites.writeInt(e.getIntKey());
+                        sites.writeInt(e.getIntValue());
+                    }
+                    siteCount[0]++;
+                } catch (IOException e) {
+                    error[0] = e;
+                }
+            });
+            if (error[0] != null) throw error[0];
+            out.writeInt(siteCount[0]);
+            sitesBuf.writeTo(out);
+            out.flush();
+
+            new DataOutputStream(file).writeLong(crc.getValue());
+        }
+        Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        logger.info("Снимок состояния поиска записан: {} (поколение {}, {} мс)",
+                target, gen, System.currentTimeMillis() - started);
+    }
+
+    private boolean load(long expectedGeneration) {
+        Path file = Path.of(path);
+        if (!Files.isRegularFile(file)) return false;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < 32 || size > Integer.MAX_VALUE) return false;
+            MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+
+            CRC32 crc = new CRC32();
+            crc.update(buf.slice(0, (int) size - 8));
+            if (crc.getValue() != buf.getLong((int) size - 8)) {
+                logger.warn("Снимок {} повреждён: контрольная сумма не совпадает", file);
+                return false;
+            }
+            if (buf.getInt() != MAGIC || buf.getInt() != VERSION) {
+                logger.warn("Снимок {} имеет неизвестный формат", file);
+                return false;
+            }
+            long gen = buf.getLong();
+            if (gen != expectedGeneration) {
+                logger.info("Снимок {} устарел: поколение {}, в БД {}", file, gen, expectedGeneration);
+                return false;
+            }
+
+            termDictionary.clear();
+            int terms = buf.getInt();
+            for (int i = 0; i < terms; i++) {
+                int id = buf.getInt();
+                byte[] bytes = new byte[buf.getInt()];
+                buf.get(bytes);
+                termDictionary.register(id, new String(bytes, StandardCharsets.UTF_8));
+            }
+
+            frequencies.clear();
+            int sites = buf.getInt();
+            for (int i = 0; i < sites; i++) {
+                int siteId = buf.getInt();
+                int count = buf.getInt();
+                for (int j = 0; j < count; j++) {
+                    frequencies.set(siteId, buf.getInt(), buf.getInt());
+                }
+            }
+            return true;
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Не удалось прочитать снимок {}: {}", file, e.toString());
+            return false;
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package searchengine.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import searchengine.dto.indexing.SiteProgressEvent;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Рассылка хода индексации подписчикам SSE. События собираются из
+ * {@link IndexingProgress} раз в tick-ms и сериализуются один раз на всех.
+ */
+@Service
+@RequiredArgsConstructor
+public class IndexingEventsService {
+
+    private static final Logger logger = LoggerFactory.getLogger(IndexingEventsService.class);
+    private static final long KEEPALIVE_MS = 15_000;
+
+    private final IndexingProgress progress;
+    private final ObjectMapper objectMapper;
+    private final List<SseEmitter> emitters = new CopyOnWriteArrayList<>();
+
+    @Value("${indexing-events.timeout-ms:1800000}")
+    private long timeoutMs;
+
+    private String lastPayload;
+    private long lastSentAt;
+
+    public SseEmitter subscribe() {
+        SseEmitter emitter = new SseEmitter(timeoutMs);
+        emitter.onCompletion(() -> emitters.remove(emitter));
+        emitter.onTimeout(() -> emitters.remove(emitter));
+        emitter.onError(e -> emitters.remove(emitter));
+        emitters.add(emitter);
+        try {
+            emitter.send(SseEmitter.event().name("progress")
+                    .data(objectMapper.writeValueAsString(progress.snapshot())));
+        } catch (IOException e) {
+            emitters.remove(emitter);
+        }
+        return emitter;
+    }
+
+    @Scheduled(fixedRateString = "${indexing-events.tick-ms:1000}")
+    public synchronized void tick() {
+        List<SiteProgressEvent> transitions = progress.drainTransitions();
+        progress.sample();
+        if (emitters.isEmpty()) return;
+        try {
+            for (SiteProgressEvent t : transitions) {
+                broadcast("status", objectMapper.writeValueAsString(t));
+            }
+            String payload = objectMapper.writeValueAsString(progress.snapshot());
+            long now = System.currentTimeMillis();
+            if (!payload.equals(lastPayload) || now - lastSentAt >= KEEPALIVE_MS) {
+                broadcast("progress", payload);
+                lastPayload = payload;
+                lastSentAt = now;
+            }
+        } catch (IOException e) {
+            logger.warn("Не удалось сформировать событие индексации: {}", e.toString());
+        }
+    }
+
+    private void broadcast(String name, String json) {
+        for (SseEmitter emitter : emitters) {
+            try {
+                emitter.send(SseEmitter.event().name(name).data(json));
+            } catch (Exception e) {
+                emitters.remove(emitter);
+                emitter.completeWithError(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package searchengine.services;
+
+import org.springframework.stereotype.Service;
+import searchengine.crawler.LatencyHistogram;
+import searchengine.dto.indexing.SiteProgressEvent;
+import searchengine.model.SiteStatus;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Счётчики хода индексации по сайтам, которые обновляет обходчик.
+ * Читаются без обращения к БД — для потока событий /api/indexing/events.
+ * Скорость пересчитывает только {@link #sample()} из плановой рассылки;
+ * {@link #snapshot()} ничего не меняет, и новые подписчики не сбивают окно.
+ */
+@Service
+public class IndexingProgress {
+
+    /** Сколько завершённый сайт ещё виден в снимках после окончания обхода. */
+    private static final long FINISHED_RETENTION_MS = 60_000;
+
+    private final Map<String, SiteProgress> sites = new ConcurrentHashMap<>();
+    private final Queue<SiteProgressEvent> transitions = new ConcurrentLinkedQueue<>();
+
+    public SiteProgress start(String url, String name, LongSupplier queued) {
+        SiteProgress progress = new SiteProgress(url, name, queued);
+        sites.put(url, progress);
+        transitions.add(progress.snapshot(0));
+        return progress;
+    }
+
+    public void finish(String url, SiteStatus status, String error) {
+        SiteProgress progress = sites.get(url);
+        if (progress == null) return;
+        progress.status = status.name();
+        progress.error = error;
+        progress.queued = () -> 0;
+        progress.rate = 0;
+        progress.finishedAt = System.currentTimeMillis();
+        transitions.add(progress.snapshot(0));
+    }
+
+    /**
+     * Пересчёт скорости по приросту с прошлого замера и удаление сайтов,
+     * завершённых дольше {@link #FINISHED_RETENTION_MS} назад. Вызывается
+     * только плановой рассылкой.
+     */
+    public void sample() {
+        long now = System.currentTimeMillis();
+        for (SiteProgress p : sites.values()) {
+            if (p.finishedAt > 0) {
+                if (now - p.finishedAt >= FINISHED_RETENTION_MS) sites.remove(p.url, p);
+                continue;
+            }
+            long fetched = p.fetched.get();
+            double seconds = (now - p.lastSampleAt) / 1000.0;
+            if (seconds > 0) p.rate = (fetched - p.lastSampleFetched) / seconds;
+            p.lastSampleAt = now;
+            p.lastSampleFetched = fetched;
+        }
+    }
+
+    /** Снимок всех сайтов со скоростью последнего замера; без побочных эффектов. */
+    public List<SiteProgressEvent> snapshot() {
+        List<SiteProgressEvent> events = new ArrayList<>();
+        for (SiteProgress p : sites.values()) {
+            events.add(p.snapshot(p.rate));
+        }
+        return events;
+    }
+
+    public Optional<SiteProgress> site(String url) {
+        return Optional.ofNullable(sites.get(url));
+    }
+
+    /** Переходы статусов, накопленные с прошлого вызова. */
+    public List<SiteProgressEvent> drainTransitions() {
+        List<SiteProgressEvent> events = new ArrayList<>();
+        SiteProgressEvent e;
+        while ((e = transitions.poll()) != null) events.add(e);
+        return events;
+    }
+
+    public static class SiteProgress {
+        private final String url;
+        private final String name;
+        private volatile LongSupplier queued;
+        private volatile String status = SiteStatus.INDEXING.name();
+        private volatile String error;
+        private final AtomicLong fetched = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+        private final AtomicLong lemmas = new AtomicLong();
+        private final AtomicLong bytes = new AtomicLong();
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private volatile long lastSampleAt = System.currentTimeMillis();
+        private volatile long lastSampleFetched;
+        private volatile double rate;
+        private volatile long finishedAt;
+
+        private SiteProgress(String url, String name, LongSupplier queued) {
+            this.url = url;
+            this.name = name;
+            this.queued = queued;
+        }
+
+        public void pageFetched(long size) {
+            fetched.incrementAndGet();
+            bytes.addAndGet(size);
+        }
+
+        public void pageFailed() {
+            failed.incrementAndGet();
+        }
+
+        public void lemmasWritten(int count) {
+            lemmas.addAndGet(count);
+        }
+
+        /** Полное время обработки страницы: загрузка, разбор, запись в БД. */
+        public void pageProcessed(long millis) {
+            latency.record(millis);
+        }
+
+        public LatencyHistogram getLatency() {
+            return latency;
+        }
+
+        private SiteProgressEvent snapshot(double rate) {
+            SiteProgressEvent e = new SiteProgressEvent();
+            e.setUrl(url);
+            e.setName(name);
+            e.setStatus(status);
+            e.setPagesFetched(fetched.get());
+            e.setPagesQueued(queued.getAsLong());
+            e.setPagesFailed(failed.get());
+            e.setLemmasWritten(lemmas.get());
+            e.setBytes(bytes.get());
+            e.setPagesPerSecond(Math.round(rate * 100) / 100.0);
+            e.setError(error);
+            return e;
+        }
+    }
+}
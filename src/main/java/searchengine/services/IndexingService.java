@@ -3,6 +3,8 @@ package searchengine.services;
 public interface IndexingService {
     boolean startIndexing();
     boolean stopIndexing();
+    boolean resumeIndexing();
     boolean indexPage(String url);
+    void reindexPage(String url) throws Exception;
     boolean isIndexing();
 }
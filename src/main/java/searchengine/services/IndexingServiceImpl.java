@@ -1,31 +1,42 @@
 package searchengine.services;
 
 import lombok.RequiredArgsConstructor;
-import org.jsoup.Connection;
-import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 import searchengine.config.Site;
 import searchengine.config.SitesList;
+import searchengine.crawler.AdaptiveConcurrencyLimiter;
+import searchengine.crawler.CrawlBudget;
+import searchengine.crawler.CrawlCheckpoint;
+import searchengine.crawler.CrawlFrontier;
+import searchengine.crawler.LemmaAggregator;
+import searchengine.crawler.RevisitPolicy;
+import searchengine.crawler.SiteCrawl;
+import searchengine.crawler.UrlCanonicalizer;
+import searchengine.crawler.VisitedSet;
 import searchengine.model.*;
-import searchengine.repositories.IndexRepository;
 import searchengine.repositories.LemmaRepository;
 import searchengine.repositories.PageRepository;
 import searchengine.repositories.SiteRepository;
-import searchengine.utils.LemmaFinder;
-import javax.transaction.Transactional;
 import java.io.IOException;
+import java.net.ConnectException;
 import java.net.URI;
+import java.net.http.HttpTimeoutException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.LocalDateTime;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executors;
-import java.util.concurrent.ForkJoinPool;
-import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
@@ -33,15 +44,35 @@ public class IndexingServiceImpl {
 
     private final PageRepository pageRepository;
     private final SiteRepository siteRepository;
-    private final IndexRepository indexRepository;
     private final LemmaRepository lemmaRepository;
     private final SitesList sitesList;
     private final LemmaService lemmaService;
-    private static final int MAX_DEPTH = 3;
+    private final PageFetcher pageFetcher;
+    private final PartitionLeaseService leaseService;
+    private final IndexGeneration indexGeneration;
+    private final DocumentFrequencies documentFrequencies;
+    private final TransactionTemplate transactionTemplate;
+    private final IndexingProgress indexingProgress;
+    private final ContentExtractor contentExtractor;
+    private final PageFacets pageFacets;
+    private final SitePartitions sitePartitions;
+    private final IndexSnapshotService indexSnapshotService;
+    private final UrlCanonicalizer urlCanonicalizer;
+    private final RevisitPolicy revisitPolicy;
+    private final JdbcTemplate jdbcTemplate;
+    private static final int DEFAULT_MAX_DEPTH = 3;
+    private static final int DEFAULT_CHECKPOINT_INTERVAL_MS = 30_000;
+    private static final int DEFAULT_STOP_DRAIN_TIMEOUT_MS = 30_000;
     private static final Logger logger = LoggerFactory.getLogger(IndexingServiceImpl.class);
+    private final Object siteCreationLock = new Object();
+    private static final int PAGE_LOCK_STRIPES = 64;
+    private final Object[] pageLocks = Stream.generate(Object::new).limit(PAGE_LOCK_STRIPES).toArray();
 
     private volatile boolean indexing = false;
+    private volatile boolean stopping = false;
     private ExecutorService pool;
+    private final Map<String, SiteCrawl> activeCrawls = new ConcurrentHashMap<>();
+    private final Set<String> pendingSites = ConcurrentHashMap.newKeySet();
 
     public boolean isIndexing() {
         return indexing;
@@ -52,18 +83,38 @@ public class IndexingServiceImpl {
         if (indexing) return false;
         indexing = true;
 
-        pool = Executors.newFixedThreadPool(Math.max(1, sitesList.getSites().size()));
         for (Site s : sitesList.getSites()) {
-            pool.submit(() -> crawlSite(s));
+            if (leaseService.ownsUrl(s.getUrl())) {
+                submitCrawl(s, false);
+            } else {
+                markPending(s); // сайт обойдёт узел, арендовавший его партицию
+            }
         }
+        if (pendingSites.isEmpty()) indexing = false;
         return true;
     }
 
-    public synchronized boolean stopIndexing() {
-        if (!indexing) return false;
-        indexing = false;
-        if (pool != null) {
-            pool.shutdownNow();
+    /**
+     * Мягкая остановка: обходы дописывают страницы, которые уже загружают,
+     * сохраняют контрольную точку и завершаются. Потоки прерываются, только
+     * если не уложились в stop-drain-timeout-ms.
+     */
+    public boolean stopIndexing() {
+        ExecutorService draining;
+        synchronized (this) {
+            if (!indexing || stopping) return false;
+            stopping = true;
+            activeCrawls.values().forEach(SiteCrawl::cancel);
+            draining = pool;
+            pool = null;
+        }
+        try {
+            if (draining != null) drain(draining);
+        } finally {
+            synchronized (this) {
+                indexing = false;
+                stopping = false;
+            }
         }
         siteRepository.findAll().forEach(se -> {
             if (se.getStatus() == SiteStatus.INDEXING) {
@@ -76,43 +127,319 @@ public class IndexingServiceImpl {
         return true;
     }
 
+    /**
+     * Продолжает остановленные или прерванные сбоем обходы своих сайтов
+     * с последней контрольной точки. false — индексация уже идёт
+     * или продолжать нечего.
+     */
+    public synchronized boolean resumeIndexing() {
+        if (indexing) return false;
+        indexing = true;
+        for (Site s : sitesList.getSites()) {
+            if (!leaseService.ownsUrl(s.getUrl())) continue;
+            siteRepository.findByUrl(s.getUrl())
+                    .filter(se -> se.getStatus() != SiteStatus.INDEXED)
+                    .filter(se -> Files.isRegularFile(checkpointFile(se)))
+                    .ifPresent(se -> submitCrawl(s, true));
+        }
+        if (pendingSites.isEmpty()) {
+            indexing = false;
+            return false;
+        }
+        return true;
+    }
+
+    private void drain(ExecutorService draining) {
+        int timeout = Optional.ofNullable(sitesList.getStopDrainTimeoutMs()).orElse(DEFAULT_STOP_DRAIN_TIMEOUT_MS);
+        draining.shutdown();
+        try {
+            if (!draining.awaitTermination(timeout, TimeUnit.MILLISECONDS)) {
+                logger.warn("Обходы не дописали текущие страницы за {} мс, потоки прерываются", timeout);
+                draining.shutdownNow();
+                draining.awaitTermination(5, TimeUnit.SECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            draining.shutdownNow();
+        }
+    }
+
+    /**
+     * Такт кластерного режима: продление аренды партиций, остановка обходов,
+     * чьи партиции ушли другому узлу или которые остановлены на другом узле,
+     * и подхват сайтов в статусе INDEXING из своих партиций, которые никто не обходит;
+     * если на этом узле осталась контрольная точка сайта, обход продолжается с неё.
+     */
+    @Scheduled(fixedDelayString = "${cluster.heartbeat-ms:10000}")
+    public void clusterTick() {
+        if (!leaseService.isEnabled() || stopping) return;
+        Set<Integer> busy = new HashSet<>();
+        activeCrawls.keySet().forEach(url -> busy.add(leaseService.partitionOf(url)));
+        leaseService.heartbeat(busy);
+
+        Map<String, SiteEntity> stored = new HashMap<>();
+        siteRepository.findAll().forEach(se -> stored.put(se.getUrl(), se));
+
+        activeCrawls.forEach((url, crawl) -> {
+            SiteEntity se = stored.get(url);
+            boolean stoppedElsewhere = se != null && se.getStatus() != SiteStatus.INDEXING;
+            if (!leaseService.ownsUrl(url) || stoppedElsewhere) {
+                logger.warn("Обход {} передан другому узлу или остановлен", url);
+                crawl.cancel();
+            }
+        });
 
-    private void crawlSite(Site confSite) {
-        SiteEntity site = prepareSite(confSite);
-        String root = extractRootUrl(confSite.getUrl());
-        Set<String> visited = ConcurrentHashMap.newKeySet();
+        for (Site s : sitesList.getSites()) {
+            SiteEntity se = stored.get(s.getUrl());
+            if (se == null || se.getStatus() != SiteStatus.INDEXING) continue;
+            if (pendingSites.contains(s.getUrl()) || !leaseService.ownsUrl(s.getUrl())) continue;
+            logger.info("Узел {} подхватывает обход {}", leaseService.getNodeId(), s.getUrl());
+            synchronized (this) {
+                indexing = true;
+                submitCrawl(s, Files.isRegularFile(checkpointFile(se)));
+            }
+        }
+    }
+
+    private void submitCrawl(Site confSite, boolean resume) {
+        if (!pendingSites.add(confSite.getUrl())) return;
+        if (pool == null) {
+            pool = Executors.newCachedThreadPool();
+        }
+        pool.submit(() -> {
+            try {
+                indexGeneration.beginWrite();
+                crawlSite(confSite, resume);
+            } finally {
+                indexGeneration.endWrite();
+                finishCrawl(confSite.getUrl());
+                // последний закончившийся обход фиксирует снимок состояния поиска
+                indexSnapshotService.writeIfStale();
+            }
+        });
+    }
+
+    private synchronized void finishCrawl(String url) {
+        pendingSites.remove(url);
+        if (pendingSites.isEmpty()) indexing = false;
+    }
 
-        ForkJoinPool fjp = new ForkJoinPool(Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+    private void markPending(Site confSite) {
+        SiteEntity site = siteRepository.findByUrl(confSite.getUrl()).orElseGet(SiteEntity::new);
+        site.setUrl(confSite.getUrl());
+        site.setName(confSite.getName());
+        site.setStatus(SiteStatus.INDEXING);
+        site.setStatusTime(LocalDateTime.now());
+        site.setLastError(null);
+        siteRepository.save(site);
+    }
+
+
+    private void crawlSite(Site confSite, boolean resume) {
+        Optional<SiteEntity> existing = resume ? resumeSite(confSite) : Optional.empty();
+        boolean resumed = existing.isPresent();
+        SiteEntity site = existing.orElseGet(() -> prepareSite(confSite));
+        String root = extractRootUrl(confSite.getUrl());
+        AdaptiveConcurrencyLimiter limiter = createLimiter();
+        CrawlFrontier frontier = new CrawlFrontier(frontierCapacity(), frontierFile(site));
+        IndexingProgress.SiteProgress progress = indexingProgress.start(site.getUrl(), site.getName(), frontier::size);
+        LemmaAggregator aggregator = Boolean.FALSE.equals(sitesList.getAggregateLemmas()) ? null : new LemmaAggregator();
+        SiteCrawl crawl = new SiteCrawl(site, root, limiter, createBudget(confSite), frontier, progress, aggregator, resumed);
+        activeCrawls.put(confSite.getUrl(), crawl);
+        Path checkpoint = checkpointFile(site);
+        boolean checkpointed = false;
+
+        ExecutorService workers = Executors.newFixedThreadPool(limiter.getMaxLimit());
         try {
-            fjp.invoke(new CrawlTask(root + "/", site, root, visited,0)); // ✅ стартуем с "/"
-            site.setStatus(indexing ? SiteStatus.INDEXED : site.getStatus());
+            if (aggregator != null && resumed) lemmaService.seedAggregator(site, aggregator);
+            if (!resumed || !restoreCheckpoint(crawl, checkpoint)) {
+                String start = root + "/"; // ✅ стартуем с "/"
+                crawl.getVisited().add(start);
+                frontier.push(start, 0);
+            }
+            for (int i = 0; i < limiter.getMaxLimit(); i++) {
+                workers.submit(() -> crawlWorker(crawl));
+            }
+            workers.shutdown();
+            long interval = Optional.ofNullable(sitesList.getCheckpointIntervalMs()).orElse(DEFAULT_CHECKPOINT_INTERVAL_MS);
+            long nextCheckpoint = System.currentTimeMillis() + interval;
+            while (!workers.awaitTermination(1, TimeUnit.SECONDS)) {
+                if (interval > 0 && System.currentTimeMillis() >= nextCheckpoint) {
+                    saveCheckpoint(crawl, checkpoint);
+                    nextCheckpoint = System.currentTimeMillis() + interval;
+                }
+            }
+            if (crawl.isCancelled()) return;
+            site.setStatus(SiteStatus.INDEXED);
+            String reason = crawl.getBudget().exhaustedReason();
+            if (reason != null) {
+                logger.warn("Обход {} остановлен: {}", site.getUrl(), reason);
+                site.setLastError("Обход остановлен: " + reason);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            crawl.cancel();
         } catch (Exception e) {
             site.setStatus(SiteStatus.FAILED);
             site.setLastError(e.getMessage());
         } finally {
-            site.setStatusTime(LocalDateTime.now());
-            siteRepository.save(site);
-            fjp.shutdown();
+            activeCrawls.remove(confSite.getUrl());
+            workers.shutdownNow();
+            if (site.getStatus() == SiteStatus.INDEXED && !crawl.isCancelled()) {
+                deleteCheckpoint(checkpoint);
+                // у продолженного обхода ссылки со страниц, обойдённых до остановки, не учтены
+                if (!resumed) writeInlinks(crawl);
+            } else {
+                checkpointed = saveCheckpoint(crawl, checkpoint);
+            }
+            try {
+                frontier.close();
+            } catch (IOException e) {
+                logger.warn("Не удалось удалить файл очереди обхода {}: {}", site.getUrl(), e.toString());
+            }
+            if (aggregator != null || resumed) {
+                // частоты сбрасываем и для прерванного обхода: его страницы и idx уже в БД
+                try {
+                    if (resumed) {
+                        lemmaService.recountFrequencies(site);
+                    } else {
+                        lemmaService.flushFrequencies(site, aggregator);
+                    }
+                } catch (Exception e) {
+                    logger.error("Не удалось записать частоты лемм {}: {}", site.getUrl(), e.toString());
+                    site.setStatus(SiteStatus.FAILED);
+                    site.setLastError("Не удалось записать частоты лемм: " + e.getMessage());
+                }
+            }
+            if (!crawl.isCancelled()) {
+                site.setStatusTime(LocalDateTime.now());
+                siteRepository.save(site);
+                indexingProgress.finish(site.getUrl(), site.getStatus(), site.getLastError());
+            } else {
+                indexingProgress.finish(site.getUrl(), SiteStatus.FAILED,
+                        checkpointed ? "Обход остановлен, его можно продолжить" : "Обход прерван");
+            }
         }
     }
 
-    private String normalizeUrl(String url) {
+    private void crawlWorker(SiteCrawl crawl) {
+        CrawlFrontier frontier = crawl.getFrontier();
         try {
-            URI uri = URI.create(url);
-            String norm = uri.getScheme() + "://" + uri.getHost()
-                    + (uri.getPort() == -1 ? "" : ":" + uri.getPort())
-                    + uri.getPath();
-            return norm.replaceAll("/+$", ""); // убираем хвостовые /
-        } catch (Exception e) {
-            return url;
+            while (!crawl.isCancelled() && !crawl.getBudget().isExhausted()) {
+                CrawlFrontier.Entry entry = frontier.poll(500);
+                if (entry == null) {
+                    if (frontier.isFinished()) return;
+                    continue;
+                }
+                if (crawl.isCancelled() || !leaseService.ownsUrl(entry.getUrl())) {
+                    crawl.cancel(); // остановка или партиция ушла другому узлу
+                    frontier.putBack(entry);
+                    return;
+                }
+                long started = System.currentTimeMillis();
+                boolean processed = false;
+                try {
+                    crawlPage(crawl, entry.getUrl(), entry.getDepth());
+                    processed = true;
+                } finally {
+                    // прерванная на середине страница остаётся в контрольной точке
+                    if (processed) {
+                        frontier.done(entry);
+                    } else {
+                        frontier.putBack(entry);
+                    }
+                    crawl.getProgress().pageProcessed(System.currentTimeMillis() - started);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            logger.error("Ошибка очереди обхода {}: {}", crawl.getRoot(), e.toString());
+        }
+    }
+
+    private int maxDepth() {
+        return Optional.ofNullable(sitesList.getMaxDepth()).orElse(DEFAULT_MAX_DEPTH);
+    }
+
+    private int frontierCapacity() {
+        return Optional.ofNullable(sitesList.getFrontierCapacity()).orElse(10_000);
+    }
+
+    private Path frontierFile(SiteEntity site) {
+        String dir = Optional.ofNullable(sitesList.getFrontierDir())
+                .orElse(System.getProperty("java.io.tmpdir") + "/searchengine-frontier");
+        return Path.of(dir, "site-" + site.getId() + ".frontier");
+    }
+
+    private Path checkpointFile(SiteEntity site) {
+        String dir = Optional.ofNullable(sitesList.getCheckpointDir()).orElse("data/crawl-checkpoints");
+        return Path.of(dir, "site-" + site.getId() + ".checkpoint");
+    }
+
+    private boolean saveCheckpoint(SiteCrawl crawl, Path file) {
+        long started = System.currentTimeMillis();
+        try {
+            CrawlCheckpoint.save(file, crawl);
+            logger.info("Контрольная точка обхода {}: {} посещённых, {} в очереди, {} мс",
+                    crawl.getSite().getUrl(), crawl.getVisited().size(), crawl.getFrontier().size(),
+                    System.currentTimeMillis() - started);
+            return true;
+        } catch (IOException e) {
+            logger.warn("Не удалось сохранить контрольную точку обхода {}: {}", crawl.getSite().getUrl(), e.toString());
+            return false;
+        }
+    }
+
+    private boolean restoreCheckpoint(SiteCrawl crawl, Path file) {
+        try {
+            if (CrawlCheckpoint.restore(file, crawl)) {
+                logger.info("Обход {} продолжается с контрольной точки: {} посещённых, {} в очереди",
+                        crawl.getSite().getUrl(), crawl.getVisited().size(), crawl.getFrontier().size());
+                return true;
+            }
+        } catch (IOException e) {
+            logger.warn("Контрольная точка обхода {} не прочитана: {}", crawl.getSite().getUrl(), e.toString());
+        }
+        // без контрольной точки сайт обходится заново поверх уже сохранённых страниц
+        logger.warn("Обход {} продолжается с начала сайта", crawl.getSite().getUrl());
+        return false;
+    }
+
+    private void deleteCheckpoint(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            logger.warn("Не удалось удалить контрольную точку {}: {}", file, e.toString());
         }
     }
 
+    private AdaptiveConcurrencyLimiter createLimiter() {
+        int min = Optional.ofNullable(sitesList.getMinConcurrency()).orElse(1);
+        int max = Optional.ofNullable(sitesList.getMaxConcurrency())
+                .orElse(Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+        int target = Optional.ofNullable(sitesList.getTargetLatencyMs()).orElse(1000);
+        return new AdaptiveConcurrencyLimiter(min, max, target);
+    }
+
+    private CrawlBudget createBudget(Site confSite) {
+        return new CrawlBudget(
+                Optional.ofNullable(confSite.getMaxPages()).orElse(sitesList.getMaxPages()),
+                Optional.ofNullable(confSite.getMaxBytes()).orElse(sitesList.getMaxBytes()),
+                Optional.ofNullable(confSite.getMaxDurationSeconds()).orElse(sitesList.getMaxDurationSeconds()));
+    }
 
     private SiteEntity prepareSite(Site confSite) {
         siteRepository.findByUrl(confSite.getUrl()).ifPresent(old -> {
             logger.warn(" Удаляем сайт и все связанные сущности: {}", old.getUrl());
+            // с секционированием страницы и леммы уходят вместе с секциями,
+            // и каскаду JPA остаётся удалить только строку site
+            sitePartitions.dropSite(old.getId());
             siteRepository.delete(old);
+            deleteCheckpoint(checkpointFile(old));
+            documentFrequencies.clearSite(old.getId());
+            contentExtractor.clearSite(old.getId());
+            pageFacets.clearSite(old.getId());
         });
 
         SiteEntity site = new SiteEntity();
@@ -121,10 +448,26 @@ public class IndexingServiceImpl {
         site.setStatus(SiteStatus.INDEXING);
         site.setStatusTime(LocalDateTime.now());
         site.setLastError(null);
-        return siteRepository.save(site);
+        SiteEntity saved = siteRepository.save(site);
+        sitePartitions.addSite(saved.getId());
+        return saved;
+    }
+
+    private Optional<SiteEntity> resumeSite(Site confSite) {
+        return siteRepository.findByUrl(confSite.getUrl()).map(site -> {
+            site.setStatus(SiteStatus.INDEXING);
+            site.setStatusTime(LocalDateTime.now());
+            site.setLastError(null);
+            // результат merge не берём: у его копии загружены леммы сайта, и каждое
+            // следующее сохранение сайта каскадом перезаписывало бы их частоты
+            siteRepository.save(site);
+            return site;
+        });
     }
 
     private String extractRootUrl(String url) {
+        String origin = urlCanonicalizer.origin(url);
+        if (origin != null) return origin;
         try {
             URI u = URI.create(url);
             String scheme = u.getScheme();
@@ -140,15 +483,6 @@ public class IndexingServiceImpl {
     }
 
 
-    private Connection.Response fetchResponse(String url) throws IOException {
-        return Jsoup.connect(url)
-                .userAgent(Optional.ofNullable(sitesList.getUserAgent()).orElse("Mozilla/5.0 (compatible; MySearchBot/1.0)"))
-                .referrer(Optional.ofNullable(sitesList.getReferer()).orElse("https://www.google.com"))
-                .timeout(20_000)
-                .ignoreHttpErrors(true)
-                .execute();
-    }
-
     private String toPath(String root, String fullUrl) {
         if (!fullUrl.startsWith(root)) {
             return null; // внешние ссылки не сохраняем
@@ -159,191 +493,271 @@ public class IndexingServiceImpl {
     }
 
 
-    private PageEntity savePage(SiteEntity site, String root, String link, int code, String htmlContent) {
+    private String pagePath(String root, String link) {
         String path = toPath(root, link);
-        if (path.isEmpty()) path = "/";
+        return path.isEmpty() ? "/" : path;
+    }
 
+    /** depth null — глубина страницы неизвестна (переиндексация по запросу), прежняя сохраняется. */
+    private PageEntity savePage(SiteEntity site, String root, String link, int code, String htmlContent,
+                                Integer depth, long contentHash) {
+        String path = pagePath(root, link);
         PageEntity page = pageRepository.findBySiteAndPath(site, path).orElse(new PageEntity());
         page.setSite(site);
         page.setPath(path);
         page.setCode(code);
         page.setContent(htmlContent == null ? "" : htmlContent);
+        if (depth != null) page.setDepth(depth);
+        revisitPolicy.visited(page, contentHash, LocalDateTime.now());
         return pageRepository.save(page);
     }
 
-    @Transactional
-    public boolean indexPage(String url) {
+    private String pageUrl(String root, String path) {
+        return root + (path.equals("/") ? "/" : path);
+    }
+
+    /**
+     * Число входящих ссылок по итогам полного обхода — для приоритета повторных посещений.
+     * Путь страницы совпадает с каноническим URL без корня, поэтому отпечаток
+     * восстанавливается из него без хранения самих адресов.
+     */
+    private void writeInlinks(SiteCrawl crawl) {
+        List<Object[]> batch = new ArrayList<>();
+        jdbcTemplate.query("select id, path from page where site_id = ?",
+                rs -> {
+                    batch.add(new Object[]{crawl.inlinks(pageUrl(crawl.getRoot(), rs.getString(2))), rs.getInt(1)});
+                }, crawl.getSite().getId());
+        for (int from = 0; from < batch.size(); from += 1000) {
+            jdbcTemplate.batchUpdate("update page set inlinks = ? where id = ?",
+                    batch.subList(from, Math.min(batch.size(), from + 1000)));
+        }
+    }
+
+    /**
+     * Ошибка одной страницы не меняет статус сайта: она касается только этого
+     * адреса и возвращается вызывающему.
+     */
+    public boolean indexPage(String rawUrl) {
+        try {
+            reindexPage(rawUrl);
+            return true;
+        } catch (Exception e) {
+            logger.warn("Не удалось проиндексировать {}: {}", rawUrl, e.toString());
+            return false;
+        }
+    }
+
+    /**
+     * Загрузка идёт вне транзакции; транзакция открывается только на запись
+     * страницы и её лемм.
+     */
+    public void reindexPage(String rawUrl) throws Exception {
+        String url = Optional.ofNullable(urlCanonicalizer.canonicalize(rawUrl)).orElse(rawUrl);
         Optional<Site> confOpt = sitesList.getSites().stream()
-                .filter(s -> url.startsWith(s.getUrl()))
+                .filter(s -> rawUrl.startsWith(s.getUrl()) || url.startsWith(extractRootUrl(s.getUrl())))
                 .findFirst();
 
-        if (confOpt.isEmpty()) return false;
+        if (confOpt.isEmpty()) {
+            throw new IllegalArgumentException("Страница за пределами сайтов из конфигурации: " + rawUrl);
+        }
         Site confSite = confOpt.get();
         String root = extractRootUrl(confSite.getUrl());
 
-        SiteEntity site = siteRepository.findByUrl(confSite.getUrl()).orElseGet(() -> {
-            SiteEntity se = new SiteEntity();
-            se.setUrl(confSite.getUrl());
-            se.setName(confSite.getName());
-            se.setStatus(SiteStatus.INDEXED);
-            se.setStatusTime(LocalDateTime.now());
-            return siteRepository.save(se);
-        });
-
-        try {
-            Connection.Response res = fetchResponse(url);
-            int status = res.statusCode();
-            String body = res.body() == null ? "" : res.body();
-
-            String path = toPath(root, url);
-            if (path.isEmpty()) path = "/";
-
-            pageRepository.findBySiteAndPath(site, path).ifPresent(existing -> {
-                indexRepository.deleteAllByPage(existing);
-                pageRepository.delete(existing);
+        SiteEntity site;
+        // страницы одного пакета индексируются параллельно: сайт создаёт только первая
+        synchronized (siteCreationLock) {
+            site = siteRepository.findByUrl(confSite.getUrl()).orElseGet(() -> {
+                SiteEntity se = new SiteEntity();
+                se.setUrl(confSite.getUrl());
+                se.setName(confSite.getName());
+                se.setStatus(SiteStatus.INDEXED);
+                se.setStatusTime(LocalDateTime.now());
+                SiteEntity saved = siteRepository.save(se);
+                sitePartitions.addSite(saved.getId());
+                return saved;
             });
+        }
 
-            if (status >= 400) {
-
-                savePage(site, root, url, status, body);
-                return true;
-            }
-
-            PageEntity page = savePage(site, root, url, status, body);
-
-
-            LemmaFinder lf = LemmaFinder.getInstance();
-            String text = extractText(body);
-            Map<String, Integer> lemmas = lf.collectLemmas(text);
-            lemmaService.applyLemmas(site, page, lemmas);
-
-            return true;
-
-        } catch (Exception e) {
-            site.setStatus(SiteStatus.FAILED);
-            site.setLastError(e.getMessage());
-            site.setStatusTime(LocalDateTime.now());
-            siteRepository.save(site);
-            return false;
+        indexGeneration.beginWrite();
+        try {
+            writePage(site, root, url, pageFetcher.fetch(url));
+        } finally {
+            indexGeneration.endWrite();
         }
     }
 
-    private String extractText(String html) {
+    /**
+     * Повторное посещение страницы планировщиком свежести. Если код ответа и
+     * отпечаток текста не изменились, страница не переиндексируется — сдвигается
+     * только срок следующего посещения. true — содержимое изменилось.
+     */
+    public boolean revisitPage(SiteEntity site, PageEntity page) throws IOException {
+        String root = extractRootUrl(site.getUrl());
+        String url = pageUrl(root, page.getPath());
+        PageFetcher.FetchedPage res = pageFetcher.fetch(url);
+        long hash = res.getStatusCode() >= 400
+                ? VisitedSet.fingerprint(res.getBody())
+                : RevisitPolicy.fingerprint(res.parse());
+        if (res.getStatusCode() == page.getCode() && Objects.equals(page.getContentHash(), hash)) {
+            revisitPolicy.visited(page, hash, LocalDateTime.now());
+            pageRepository.save(page);
+            return false;
+        }
+        indexGeneration.beginWrite();
         try {
-            return Jsoup.parse(html).text();
-        } catch (Exception e) {
-            return html;
+            writePage(site, root, url, res);
+        } finally {
+            indexGeneration.endWrite();
         }
+        return true;
     }
 
-    private class CrawlTask extends RecursiveAction {
-        private final String url;
-        private final SiteEntity site;
-        private final String root;
-        private final Set<String> visited;
-        private final int depth;
-        private static final int MAX_DEPTH = 3;
-
+    /**
+     * Запись загруженной страницы в одной транзакции: строка page обновляется
+     * на месте (id и сроки посещений сохраняются), в idx и частотах лемм
+     * меняется только разница со старой версией. Записи одной страницы идут
+     * по очереди: внутри узла — под блокировкой по (сайт, путь), между узлами —
+     * под блокировкой строки page, взятой первым запросом транзакции, чтобы
+     * разница считалась от версии, записанной предыдущим писателем.
+     */
+    private void writePage(SiteEntity site, String root, String url, PageFetcher.FetchedPage res) {
+        int status = res.getStatusCode();
+        String body = res.getBody();
+        Document doc = status >= 400 ? null : res.parse();
+        String path = pagePath(root, url);
+        if (doc == null) contentExtractor.removePage(site.getId(), path);
+        Map<String, Integer> lemmas = doc == null ? Map.of() : contentExtractor.lemmas(site.getId(), path, doc);
+        long hash = doc == null ? VisitedSet.fingerprint(body) : RevisitPolicy.fingerprint(doc);
+
+        synchronized (pageLocks[Math.floorMod(Objects.hash(site.getId(), path), PAGE_LOCK_STRIPES)]) {
+            transactionTemplate.executeWithoutResult(tx -> {
+                // блокирующее чтение до любого обычного: снимок транзакции берётся уже после блокировки
+                jdbcTemplate.queryForList("select id from page where site_id = ? and path = ? for update",
+                        Integer.class, site.getId(), path);
+                PageEntity page = savePage(site, root, url, status, body, null, hash);
+                // у страницы с ошибкой лемм нет: разница удалит все её строки idx
+                lemmaService.applyLemmaDelta(site, page, lemmas);
+            });
+        }
+    }
 
-        public CrawlTask(String url, SiteEntity site, String root, Set<String> visited,int depth) {
-            this.url = url;
-            this.site = site;
-            this.root = root;
-            this.visited = visited;
-            this.depth = depth;
+    /**
+     * Адрес, под которым сохраняется страница: из &lt;link rel=canonical&gt; или после
+     * редиректов, если он в пределах сайта. null — страница под этим адресом уже
+     * посещена или стоит в очереди, повторно её не индексируем.
+     */
+    private String effectiveUrl(SiteCrawl crawl, String url, String fetchedUrl, Document doc) {
+        Element link = doc.selectFirst("link[rel=canonical][href]");
+        String declared = link == null ? null : urlCanonicalizer.canonicalize(link.attr("abs:href"));
+        String target = declared != null ? declared : urlCanonicalizer.canonicalize(fetchedUrl);
+        if (target == null || target.equals(url) || toPath(crawl.getRoot(), target) == null) return url;
+        return crawl.getVisited().add(target) ? target : null;
+    }
 
-        }
+    private static boolean isOverload(IOException e) {
+        return e instanceof HttpTimeoutException || e instanceof ConnectException;
+    }
 
-        @Override
-        protected void compute() {
-            String normUrl = normalizeUrl(url);
-            if (!indexing) return;
-            if (depth >= MAX_DEPTH) return;
-            if (!visited.add(url)) return;
+    private void crawlPage(SiteCrawl crawl, String url, int depth) throws InterruptedException {
+        if (!crawl.getBudget().tryAcquirePage()) return;
 
+        SiteEntity site = crawl.getSite();
+        String root = crawl.getRoot();
+        AdaptiveConcurrencyLimiter limiter = crawl.getLimiter();
 
+        try {
+            PageFetcher.FetchedPage res;
+            limiter.acquire();
+            long started = System.currentTimeMillis();
+            int fetchStatus = -1;
             try {
-                Connection.Response res = fetchResponse(url);
-                int status = res.statusCode();
-                String body = res.body() == null ? "" : res.body();
+                res = pageFetcher.fetch(url);
+                fetchStatus = res.getStatusCode();
+            } catch (PageFetcher.UnsupportedContentTypeException e) {
+                fetchStatus = e.getStatusCode();
+                throw e;
+            } catch (IOException e) {
+                // перегрузку означают только таймауты и отказы в соединении
+                if (!isOverload(e)) fetchStatus = 0;
+                throw e;
+            } finally {
+                limiter.release(System.currentTimeMillis() - started, fetchStatus);
+            }
+            int status = res.getStatusCode();
+            String body = res.getBody();
+            crawl.getBudget().addBytes(res.getSize());
+            crawl.getProgress().pageFetched(res.getSize());
 
-                if (status >= 400) {
-                    savePage(site, root, url, status, body);
-                    return;
-                }
+            if (status >= 400) {
+                crawl.getProgress().pageFailed();
+                PageEntity failed = savePage(site, root, url, status, body, depth, VisitedSet.fingerprint(body));
+                contentExtractor.removePage(site.getId(), failed.getPath());
+                if (crawl.isResumed()) lemmaService.clearPageIndex(failed);
+                return;
+            }
 
-                PageEntity page = savePage(site, root, url, status, body);
-                site.setStatusTime(LocalDateTime.now());
-                siteRepository.save(site);
+            Document doc = res.parse();
+            String pageUrl = effectiveUrl(crawl, url, res.getUrl(), doc);
+            if (pageUrl == null) return; // страница уже обработана под каноническим адресом
 
-                try {
-                    String text = extractText(body);
-                    Map<String, Integer> lemmas = LemmaFinder.getInstance().collectLemmas(text);
+            PageEntity page = savePage(site, root, pageUrl, status, body, depth, RevisitPolicy.fingerprint(doc));
+            site.setStatusTime(LocalDateTime.now());
+            siteRepository.save(site);
+
+            try {
+                Map<String, Integer> lemmas = contentExtractor.lemmas(site.getId(), page.getPath(), doc);
+                // страница могла быть записана до остановки — её idx пишется заново
+                if (crawl.isResumed()) lemmaService.clearPageIndex(page);
+                if (crawl.getLemmaAggregator() != null) {
+                    lemmaService.applyLemmas(crawl.getLemmaAggregator(), site, page, lemmas);
+                } else {
                     lemmaService.applyLemmas(site, page, lemmas);
-                    logger.info(" Индексация страницы завершена: {} ({} лемм)", page.getPath(), lemmas.size());
-                } catch (Exception le) {
-                    logger.error("Лемматизация не выполнена для {}: {}", url, le.toString());
                 }
+                crawl.getProgress().lemmasWritten(lemmas.size());
+                logger.info(" Индексация страницы завершена: {} ({} лемм)", page.getPath(), lemmas.size());
+            } catch (Exception le) {
+                logger.error("Лемматизация не выполнена для {}: {}", url, le.toString());
+            }
 
-                if (status == 200 && body != null && !body.isBlank()) {
-                    Document doc = res.parse();
-                    List<CrawlTask> subtasks = new ArrayList<>();
-
-                    for (Element a : doc.select("a[href]")) {
-                        if (!indexing || Thread.currentThread().isInterrupted()) return;
-
-                        String rawHref = a.attr("abs:href");
-                        if (rawHref == null || rawHref.isEmpty()) continue;
+            if (status == 200 && !body.isBlank() && depth + 1 < maxDepth()) {
+                URI rootUri = URI.create(root);
 
-                        // сначала убираем якорь (#), потом нормализуем
-                        rawHref = rawHref.replaceAll("#.*$", "");
-                        String href = normalizeUrl(rawHref);
-                        if (href == null || href.isEmpty()) continue;
+                for (Element a : doc.select("a[href]")) {
+                    // при остановке ссылки дописываются, иначе они пропадут из контрольной точки
+                    if (crawl.getBudget().isExhausted()) return;
 
-                        try {
-                            URI uri = URI.create(href);
-                            URI rootUri = URI.create(root);
-                            if (!Objects.equals(uri.getHost(), rootUri.getHost())) continue;
-                        } catch (Exception ignored) {
-                            continue;
-                        }
+                    // двоичные файлы отсекаем до загрузки
+                    String href = urlCanonicalizer.canonicalize(a.attr("abs:href"));
+                    if (href == null || !urlCanonicalizer.isFetchable(href)) continue;
 
-                        // depth + 1
-                        subtasks.add(new CrawlTask(href, site, root, visited, depth + 1));
+                    try {
+                        URI uri = URI.create(href);
+                        if (!Objects.equals(uri.getHost(), rootUri.getHost())) continue;
+                    } catch (Exception ignored) {
+                        continue;
                     }
 
-                    Integer delay = sitesList.getDelayMs();
-                    if (delay != null && delay > 0) {
-                        try {
-                            Thread.sleep(delay);
-                        } catch (InterruptedException ignored) {
-                            Thread.currentThread().interrupt();
-                            return;
-                        }
+                    crawl.addInlink(href);
+                    if (crawl.getVisited().add(href)) {
+                        crawl.getFrontier().push(href, depth + 1);
                     }
-
-                    if (!subtasks.isEmpty()) invokeAll(subtasks);
                 }
+            }
 
-
-            } catch (IOException e) {
-                logger.debug("Ошибка доступа {}: {}", url, e.toString());
-            } catch (Exception e) {
-                logger.error("Неожиданная ошибка {}: {}", url, e.toString());
+            Integer delay = sitesList.getDelayMs();
+            if (delay != null && delay > 0) {
+                Thread.sleep(delay);
             }
+
+        } catch (IOException e) {
+            crawl.getProgress().pageFailed();
+            logger.debug("Ошибка доступа {}: {}", url, e.toString());
+        } catch (InterruptedException e) {
+            throw e;
+        } catch (Exception e) {
+            crawl.getProgress().pageFailed();
+            logger.error("Неожиданная ошибка {}: {}", url, e.toString());
         }
     }
 
 }
-
-
-
-
-
-
-
-
-
-
-
-
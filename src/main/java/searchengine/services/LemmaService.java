@@ -1,12 +1,19 @@
 package searchengine.services;
 
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
 import lombok.Getter;
 import lombok.Setter;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import searchengine.crawler.LemmaAggregator;
 import searchengine.model.IndexEntity;
 import searchengine.model.LemmaEntity;
 import searchengine.model.PageEntity;
@@ -14,7 +21,10 @@ import searchengine.model.SiteEntity;
 import searchengine.repositories.IndexRepository;
 import searchengine.repositories.LemmaRepository;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 
 
 @Service
@@ -22,6 +32,12 @@ import java.util.Map;
 public class LemmaService {
     private final LemmaRepository lemmaRepository;
     private final IndexRepository indexRepository;
+    private final TermDictionary termDictionary;
+    private final DocumentFrequencies documentFrequencies;
+    private final JdbcTemplate jdbcTemplate;
+    private final PlatformTransactionManager transactionManager;
+    private static final int FLUSH_BATCH = 1000;
+    private static final String SET_FREQUENCY = "update lemma set frequency = ? where id = ? and site_id = ?";
     private static final Logger logger = LoggerFactory.getLogger(LemmaService.class);
 
 
@@ -30,30 +46,194 @@ public class LemmaService {
         logger.info("Применяем леммы для страницы {}", page.getPath());
 
         lemmas.forEach((lemmaStr, count) -> {
-            LemmaEntity lemma = lemmaRepository.findFirstBySiteAndLemma(site, lemmaStr)
-                    .orElseGet(() -> {
-                        LemmaEntity le = new LemmaEntity();
-                        le.setSite(site);
-                        le.setLemma(lemmaStr);
-                        le.setFrequency(0);
-                        return lemmaRepository.save(le);
-                    });
-
+            int termId = termDictionary.getOrCreate(lemmaStr);
+            int lemmaId = lemmaId(site, termId);
+            LemmaEntity lemma = lemmaRepository.getReferenceById(lemmaId);
 
             if (indexRepository.findByPageAndLemma(page, lemma).isEmpty()) {
-                lemma.setFrequency(lemma.getFrequency() + 1);
-                lemma = lemmaRepository.save(lemma);
+                jdbcTemplate.update("update lemma set frequency = frequency + 1 where id = ? and site_id = ?",
+                        lemmaId, site.getId());
+                documentFrequencies.add(site.getId(), termId, 1);
             }
 
             IndexEntity idx = new IndexEntity();
             idx.setLemma(lemma);
             idx.setPage(page);
+            idx.setSiteId(site.getId());
             idx.setRank(count);
             logger.info(" Сохраняем индекс: lemma={}, page={}, rank={}",
-                    lemma.getLemma(), page.getPath(), count);
+                    lemmaStr, page.getPath(), count);
             indexRepository.save(idx);
         });
     }
 
-}
+    /**
+     * Переиндексация одной страницы по разнице лемм со старой версией: удаляются
+     * только исчезнувшие строки idx, добавляются новые, у оставшихся меняется rank,
+     * если изменилось число вхождений. Частоты лемм сдвигаются ровно на ±1
+     * одним пакетом, поэтому не накапливают ошибку от повторных переиндексаций.
+     * Вызывающий держит блокировку строки page: иначе два писателя одной страницы
+     * посчитают разницу от одной и той же старой версии.
+     */
+    @Transactional
+    public void applyLemmaDelta(SiteEntity site, PageEntity page, Map<String, Integer> lemmas) {
+        Int2ObjectOpenHashMap<Posting> old = new Int2ObjectOpenHashMap<>();
+        jdbcTemplate.query("select i.id, i.lemma_id, l.term_id, i.rank_value from idx i"
+                        + " join lemma l on l.id = i.lemma_id and l.site_id = i.site_id"
+                        + " where i.site_id = ? and i.page_id = ?",
+                rs -> {
+                    old.put(rs.getInt(3), new Posting(rs.getInt(1), rs.getInt(2), rs.getFloat(4)));
+                }, site.getId(), page.getId());
+
+        List<Object[]> inserts = new ArrayList<>();
+        List<Object[]> ranks = new ArrayList<>();
+        List<Object[]> deletes = new ArrayList<>();
+        List<Object[]> frequencies = new ArrayList<>();
+        lemmas.forEach((lemmaStr, count) -> {
+            int termId = termDictionary.getOrCreate(lemmaStr);
+            Posting posting = old.remove(termId);
+            if (posting == null) {
+                int lemmaId = lemmaId(site, termId);
+                inserts.add(new Object[]{page.getId(), lemmaId, (float) count, site.getId()});
+                frequencies.add(new Object[]{1, lemmaId, site.getId()});
+                documentFrequencies.add(site.getId(), termId, 1);
+            } else if (posting.rank != count) {
+                ranks.add(new Object[]{(float) count, posting.idxId, site.getId()});
+            }
+        });
+        old.forEach((termId, posting) -> {
+            deletes.add(new Object[]{posting.idxId, site.getId()});
+            frequencies.add(new Object[]{-1, posting.lemmaId, site.getId()});
+            documentFrequencies.add(site.getId(), termId, -1);
+        });
+
+        // условие на site_id во всех запросах: с секционированием они читают одну секцию
+        if (!deletes.isEmpty()) jdbcTemplate.batchUpdate("delete from idx where id = ? and site_id = ?", deletes);
+        if (!ranks.isEmpty()) {
+            jdbcTemplate.batchUpdate("update idx set rank_value = ? where id = ? and site_id = ?", ranks);
+        }
+        if (!inserts.isEmpty()) {
+            jdbcTemplate.batchUpdate("insert into idx (page_id, lemma_id, rank_value, site_id) values (?, ?, ?, ?)", inserts);
+        }
+        if (!frequencies.isEmpty()) {
+            jdbcTemplate.batchUpdate("update lemma set frequency = frequency + ? where id = ? and site_id = ?",
+                    frequencies);
+        }
+        logger.info("Леммы страницы {} обновлены: +{} −{}, rank изменён у {}",
+                page.getPath(), inserts.size(), deletes.size(), ranks.size());
+    }
+
+    /**
+     * Режим полного обхода: пишутся только строки idx страницы, частоты лемм
+     * копятся в aggregator и сбрасываются {@link #flushFrequencies} в конце обхода.
+     */
+    public void applyLemmas(LemmaAggregator aggregator, SiteEntity site, PageEntity page, Map<String, Integer> lemmas) {
+        if (lemmas.isEmpty() || !aggregator.markPage(page.getId())) return;
+
+        List<Object[]> rows = new ArrayList<>(lemmas.size());
+        lemmas.forEach((lemmaStr, count) -> {
+            int termId = termDictionary.getOrCreate(lemmaStr);
+            int lemmaId = aggregator.lemmaIdAndCount(termId, () -> lemmaId(site, termId));
+            rows.add(new Object[]{page.getId(), lemmaId, (float) count, site.getId()});
+        });
+        jdbcTemplate.batchUpdate("insert into idx (page_id, lemma_id, rank_value, site_id) values (?, ?, ?, ?)", rows);
+    }
 
+    public void flushFrequencies(SiteEntity site, LemmaAggregator aggregator) {
+        long started = System.currentTimeMillis();
+        List<Object[]> batch = new ArrayList<>(FLUSH_BATCH);
+        aggregator.forEach((termId, lemmaId, frequency) -> {
+            batch.add(new Object[]{frequency, lemmaId, site.getId()});
+            documentFrequencies.set(site.getId(), termId, frequency);
+            if (batch.size() == FLUSH_BATCH) {
+                jdbcTemplate.batchUpdate(SET_FREQUENCY, batch);
+                batch.clear();
+            }
+        });
+        if (!batch.isEmpty()) {
+            jdbcTemplate.batchUpdate(SET_FREQUENCY, batch);
+        }
+        logger.info("Частоты {} лемм сайта {} записаны за {} мс",
+                aggregator.size(), site.getUrl(), System.currentTimeMillis() - started);
+    }
+
+    /**
+     * id строки lemma сайта. Отсутствующая создаётся в отдельной транзакции:
+     * две страницы сайта, записываемые параллельно, могут добавить одну и ту же
+     * новую лемму, и проигравшая вставка по уникальному ключу (site_id, term_id)
+     * не должна откатывать запись своей страницы — она перечитывает чужую строку.
+     */
+    private int lemmaId(SiteEntity site, int termId) {
+        Optional<LemmaEntity> existing = lemmaRepository.findFirstBySiteAndTermId(site, termId);
+        if (existing.isPresent()) return existing.get().getId();
+        TransactionTemplate newTransaction = new TransactionTemplate(transactionManager);
+        newTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        try {
+            return newTransaction.execute(status -> {
+                LemmaEntity le = new LemmaEntity();
+                le.setSite(site);
+                le.setTermId(termId);
+                le.setFrequency(0);
+                return lemmaRepository.save(le).getId();
+            });
+        } catch (DataIntegrityViolationException e) {
+            // в новой транзакции видна строка, которую только что зафиксировал другой поток
+            return newTransaction.execute(status -> lemmaRepository.findFirstBySiteAndTermId(site, termId))
+                    .map(LemmaEntity::getId)
+                    .orElseThrow(() -> e);
+        }
+    }
+
+    /** Продолжение обхода: в aggregator загружаются уже созданные строки lemma сайта. */
+    public void seedAggregator(SiteEntity site, LemmaAggregator aggregator) {
+        jdbcTemplate.query("select term_id, id from lemma where site_id = ?",
+                rs -> {
+                    aggregator.seed(rs.getInt(1), rs.getInt(2));
+                }, site.getId());
+    }
+
+    /** Удаляет строки idx страницы перед повторной записью её лемм. */
+    public void clearPageIndex(PageEntity page) {
+        jdbcTemplate.update("delete from idx where site_id = ? and page_id = ?", page.getSite().getId(), page.getId());
+    }
+
+    /**
+     * Пересчитывает частоты лемм сайта по таблице idx. Нужен после продолжения
+     * обхода: часть страниц могла быть записана повторно, и накопленные
+     * в памяти частоты не отражают уже сохранённые до остановки страницы.
+     */
+    public void recountFrequencies(SiteEntity site) {
+        long started = System.currentTimeMillis();
+        List<Object[]> batch = new ArrayList<>(FLUSH_BATCH);
+        documentFrequencies.clearSite(site.getId());
+        jdbcTemplate.query("select l.id, l.term_id, count(i.id) from lemma l"
+                        + " left join idx i on i.lemma_id = l.id and i.site_id = l.site_id"
+                        + " where l.site_id = ? group by l.id, l.term_id",
+                rs -> {
+                    int frequency = rs.getInt(3);
+                    batch.add(new Object[]{frequency, rs.getInt(1), site.getId()});
+                    documentFrequencies.set(site.getId(), rs.getInt(2), frequency);
+                    if (batch.size() == FLUSH_BATCH) {
+                        jdbcTemplate.batchUpdate(SET_FREQUENCY, batch);
+                        batch.clear();
+                    }
+                }, site.getId());
+        if (!batch.isEmpty()) {
+            jdbcTemplate.batchUpdate(SET_FREQUENCY, batch);
+        }
+        logger.info("Частоты лемм сайта {} пересчитаны по idx за {} мс",
+                site.getUrl(), System.currentTimeMillis() - started);
+    }
+
+    private static final class Posting {
+        private final int idxId;
+        private final int lemmaId;
+        private final float rank;
+
+        private Posting(int idxId, int lemmaId, float rank) {
+            this.idxId = idxId;
+            this.lemmaId = lemmaId;
+            this.rank = rank;
+        }
+    }
+}
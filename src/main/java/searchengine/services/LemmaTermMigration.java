@@ -0,0 +1,99 @@
+package searchengine.services;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import searchengine.model.LemmaEntity;
+
+import javax.annotation.PostConstruct;
+import java.util.*;
+
+/**
+ * Перенос строк lemma со строковой колонкой lemma на term_id из общего словаря.
+ * ddl-auto добавляет term_id со значением 0 во всех старых строках, поэтому
+ * уникальный ключ (site_id, term_id) создать не может. При запуске различные
+ * значения lemma.lemma переносятся в term, term_id заполняется по ним, и только
+ * затем создаётся ключ и удаляется старая колонка. Повторный запуск ничего не делает.
+ */
+@Service
+@DependsOn("entityManagerFactory")
+public class LemmaTermMigration {
+
+    private static final Logger logger = LoggerFactory.getLogger(LemmaTermMigration.class);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final IndexGeneration indexGeneration;
+
+    public LemmaTermMigration(JdbcTemplate jdbcTemplate, IndexGeneration indexGeneration) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.indexGeneration = indexGeneration;
+    }
+
+    @PostConstruct
+    public void migrate() {
+        if (columnExists("lemma", "lemma")) {
+            long started = System.currentTimeMillis();
+            indexGeneration.beginWrite();
+            try {
+                int terms = jdbcTemplate.update("insert into term (lemma) select distinct l.lemma from lemma l"
+                        + " where l.lemma is not null and not exists (select 1 from term t where t.lemma = l.lemma)");
+                int rows = jdbcTemplate.update("update lemma set term_id = (select t.id from term t where t.lemma = lemma.lemma)"
+                        + " where lemma is not null");
+                // старый ключ (site_id, lemma) мешает удалить колонку
+                for (String name : uniqueConstraints("lemma").getOrDefault(Set.of("site_id", "lemma"), List.of())) {
+                    jdbcTemplate.execute("alter table lemma drop constraint " + name);
+                }
+                ensureSiteTermKey();
+                jdbcTemplate.execute("alter table lemma drop column lemma");
+                logger.info("Леммы переведены на словарь терминов: {} новых терминов, {} строк lemma за {} мс",
+                        terms, rows, System.currentTimeMillis() - started);
+            } finally {
+                indexGeneration.endWrite();
+            }
+        }
+        ensureSiteTermKey();
+    }
+
+    /**
+     * Ровно один уникальный ключ (site_id, term_id) с именем из сущности: ddl-auto
+     * пересоздаёт ключ по этому имени и иначе добавил бы к прежнему ключу второй.
+     */
+    private void ensureSiteTermKey() {
+        List<String> keys = uniqueConstraints("lemma").getOrDefault(Set.of("site_id", "term_id"), List.of());
+        boolean named = keys.stream().anyMatch(LemmaEntity.UNIQUE_SITE_TERM::equalsIgnoreCase);
+        if (!named) {
+            jdbcTemplate.execute("alter table lemma add constraint " + LemmaEntity.UNIQUE_SITE_TERM
+                    + " unique (site_id, term_id)");
+        }
+        for (String name : keys) {
+            if (name.equalsIgnoreCase(LemmaEntity.UNIQUE_SITE_TERM)) continue;
+            logger.info("Удаляем дублирующий уникальный ключ lemma.{}", name);
+            jdbcTemplate.execute("alter table lemma drop constraint " + name);
+        }
+    }
+
+    private boolean columnExists(String table, String column) {
+        Integer n = jdbcTemplate.queryForObject("select count(*) from information_schema.columns"
+                        + " where table_schema = schema() and lower(table_name) = ? and lower(column_name) = ?",
+                Integer.class, table, column);
+        return n != null && n > 0;
+    }
+
+    /** Набор колонок уникального ключа → имена ключей с таким набором. */
+    private Map<Set<String>, List<String>> uniqueConstraints(String table) {
+        Map<String, Set<String>> columns = new HashMap<>();
+        jdbcTemplate.query("select tc.constraint_name, kcu.column_name from information_schema.table_constraints tc"
+                        + " join information_schema.key_column_usage kcu on kcu.constraint_schema = tc.constraint_schema"
+                        + " and kcu.constraint_name = tc.constraint_name and kcu.table_name = tc.table_name"
+                        + " where tc.table_schema = schema() and lower(tc.table_name) = ? and tc.constraint_type = 'UNIQUE'",
+                rs -> {
+                    columns.computeIfAbsent(rs.getString(1), k -> new HashSet<>())
+                            .add(rs.getString(2).toLowerCase(Locale.ROOT));
+                }, table);
+        Map<Set<String>, List<String>> byColumns = new HashMap<>();
+        columns.forEach((name, cols) -> byColumns.computeIfAbsent(cols, k -> new ArrayList<>()).add(name));
+        return byColumns;
+    }
+}
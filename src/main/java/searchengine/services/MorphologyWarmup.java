@@ -0,0 +1,111 @@
+package searchengine.services;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.availability.AvailabilityChangeEvent;
+import org.springframework.boot.availability.LivenessState;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Service;
+import searchengine.utils.LemmaFinder;
+
+import javax.annotation.PostConstruct;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Загрузка словаря морфологии при старте приложения, а не на первой странице
+ * обхода или первом запросе. Словарь читается в отдельном потоке параллельно
+ * с инициализацией контекста; до начала загрузки готовность приложения
+ * объявляется REFUSING_TRAFFIC. Spring объявляет ACCEPTING_TRAFFIC только после
+ * раннеров, поэтому раннер этого класса дожидается словаря. Запросы, пришедшие
+ * раньше, ждут окончания загрузки, а не запускают её повторно.
+ *
+ * Неудачная загрузка повторяется max-attempts раз; после последней неудачи
+ * приложение объявляется сломанным (LivenessState.BROKEN) и не запускается.
+ *
+ * Словарь читается из файла morphology.dictionary-path, отображённого в память
+ * ({@link searchengine.utils.MappedMorphology}); при первом запуске файл строится
+ * из lucene-morphology.
+ */
+@Service
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class MorphologyWarmup implements ApplicationRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(MorphologyWarmup.class);
+
+    private final ApplicationEventPublisher publisher;
+    private final CompletableFuture<Void> done = new CompletableFuture<>();
+    private volatile boolean loaded;
+
+    @Value("${morphology.dictionary-path:data/morphology.dict}")
+    private String dictionaryPath;
+
+    @Value("${morphology.warmup.max-attempts:3}")
+    private int maxAttempts;
+
+    @Value("${morphology.warmup.retry-delay-ms:5000}")
+    private long retryDelayMs;
+
+    public MorphologyWarmup(ApplicationEventPublisher publisher) {
+        this.publisher = publisher;
+    }
+
+    @PostConstruct
+    public void start() {
+        AvailabilityChangeEvent.publish(publisher, this, ReadinessState.REFUSING_TRAFFIC);
+        LemmaFinder.setDictionaryPath(Path.of(dictionaryPath));
+        Thread thread = new Thread(this::load, "morphology-warmup");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        try {
+            done.get();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Словарь морфологии не загружен", e.getCause());
+        }
+    }
+
+    private void load() {
+        for (int attempt = 1; ; attempt++) {
+            long started = System.currentTimeMillis();
+            try {
+                // заодно прогреваем разбор слова, а не только чтение словаря
+                LemmaFinder.getInstance().collectLemmas("загрузка словаря морфологии");
+                loaded = true;
+                logger.info("Словарь морфологии загружен за {} мс", System.currentTimeMillis() - started);
+                done.complete(null);
+                return;
+            } catch (Throwable e) {
+                if (attempt >= maxAttempts) {
+                    logger.error("Не удалось загрузить словарь морфологии за {} попыток", attempt, e);
+                    AvailabilityChangeEvent.publish(publisher, this, LivenessState.BROKEN);
+                    done.completeExceptionally(e);
+                    return;
+                }
+                logger.warn("Попытка {} загрузить словарь морфологии не удалась, повтор через {} мс: {}",
+                        attempt, retryDelayMs, e.toString());
+            }
+            try {
+                Thread.sleep(retryDelayMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                done.completeExceptionally(e);
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package searchengine.services;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.stereotype.Service;
+import searchengine.model.SiteEntity;
+import searchengine.model.SiteStatus;
+import searchengine.repositories.PageRepository;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Фасеты выдачи по коду ответа и разделу сайта (первому сегменту пути).
+ * Для каждого сайта хранятся карты id страниц на значение фасета; счётчик —
+ * мощность пересечения такой карты с найденными страницами, поэтому ни страницы,
+ * ни результаты ради фасетов не загружаются. Карты строятся по проекции
+ * (id, code, path) и целиком перестраиваются, когда поколение индекса сменилось
+ * и запись в индекс не идёт. Поколение сдвигают только beginWrite/endWrite —
+ * в начале и конце обхода, индексации страницы или повторного посещения.
+ * Пока запись идёт (writing: сайт в статусе INDEXING или открыта запись),
+ * карты не перестраиваются: в них лишь дочитываются найденные страницы,
+ * которых там ещё нет, начиная с наименьшего отсутствующего id.
+ */
+@Service
+@RequiredArgsConstructor
+public class PageFacets {
+
+    private final PageRepository pageRepository;
+    private final IndexGeneration generation;
+
+    private final Map<Integer, SiteFacets> bySite = new ConcurrentHashMap<>();
+
+    /** Счётчики фасетов найденных страниц; generation — поколение, прочитанное запросом один раз. */
+    public Counts count(SiteEntity site, RoaringBitmap matched, long generation) {
+        SiteFacets f = facets(site, matched, generation);
+        return new Counts(count(f.byCode, matched), count(f.bySection, matched));
+    }
+
+    private static Map<String, Integer> count(Map<String, RoaringBitmap> bitmaps, RoaringBitmap matched) {
+        Map<String, Integer> counts = new TreeMap<>();
+        bitmaps.forEach((value, pages) -> {
+            int n = RoaringBitmap.andCardinality(pages, matched);
+            if (n > 0) counts.put(value, n);
+        });
+        return counts;
+    }
+
+    private SiteFacets facets(SiteEntity site, RoaringBitmap matched, long current) {
+        SiteFacets f = bySite.get(site.getId());
+        boolean writing = site.getStatus() == SiteStatus.INDEXING || generation.isWriting();
+        if (f == null || f.generation != current && !writing) {
+            f = build(site, current, pageRepository.findFacetRowsBySite(site), null);
+            bySite.put(site.getId(), f);
+        } else {
+            RoaringBitmap missing = RoaringBitmap.andNot(matched, f.all);
+            if (!missing.isEmpty()) {
+                f = build(site, f.generation, pageRepository.findFacetRowsBySiteFrom(site, missing.first()), f);
+                bySite.put(site.getId(), f);
+            }
+        }
+        return f;
+    }
+
+    /** Новые карты из строк проекции; при base — дополненные копии его карт. */
+    private SiteFacets build(SiteEntity site, long current, List<PageRepository.PageFacetRow> rows, SiteFacets base) {
+        Map<String, RoaringBitmap> byCode = new HashMap<>();
+        Map<String, RoaringBitmap> bySection = new HashMap<>();
+        RoaringBitmap all = new RoaringBitmap();
+        if (base != null) {
+            all = base.all.clone();
+            base.byCode.forEach((code, pages) -> byCode.put(code, pages.clone()));
+            base.bySection.forEach((section, pages) -> bySection.put(section, pages.clone()));
+        }
+        for (PageRepository.PageFacetRow row : rows) {
+            if (!all.checkedAdd(row.getId())) continue;
+            byCode.computeIfAbsent(String.valueOf(row.getCode()), c -> new RoaringBitmap()).add(row.getId());
+            bySection.computeIfAbsent(section(row.getPath()), s -> new RoaringBitmap()).add(row.getId());
+        }
+        byCode.values().forEach(RoaringBitmap::runOptimize);
+        bySection.values().forEach(RoaringBitmap::runOptimize);
+        all.runOptimize();
+        return new SiteFacets(current, all, byCode, bySection);
+    }
+
+    /** "/news/2024/a.html" → "/news/"; страницы в корне сайта относятся к разделу "/". */
+    static String section(String path) {
+        if (path == null || path.isEmpty()) return "/";
+        int next = path.indexOf('/', 1);
+        return next < 0 ? "/" : path.substring(0, next + 1);
+    }
+
+    public void clearSite(int siteId) {
+        bySite.remove(siteId);
+    }
+
+    @Getter
+    @RequiredArgsConstructor
+    public static class Counts {
+        private final Map<String, Integer> codes;
+        private final Map<String, Integer> sections;
+    }
+
+    private static final class SiteFacets {
+        final long generation;
+        final RoaringBitmap all;
+        final Map<String, RoaringBitmap> byCode;
+        final Map<String, RoaringBitmap> bySection;
+
+        SiteFacets(long generation, RoaringBitmap all,
+                   Map<String, RoaringBitmap> byCode, Map<String, RoaringBitmap> bySection) {
+            this.generation = generation;
+            this.all = all;
+            this.byCode = byCode;
+            this.bySection = bySection;
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package searchengine.services;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import searchengine.config.SitesList;
+
+import javax.annotation.PreDestroy;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Загрузчик страниц на общем пуле соединений java.net.http.HttpClient.
+ * Поддерживает HTTP/2 и keep-alive, распаковывает gzip/deflate, проверяет
+ * Content-Type до чтения тела и обрывает загрузку при превышении лимита размера.
+ */
+@Component
+public class PageFetcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(PageFetcher.class);
+    private static final String DEFAULT_USER_AGENT = "Mozilla/5.0 (compatible; MySearchBot/1.0)";
+    private static final String DEFAULT_REFERER = "https://www.google.com";
+    private static final int DEFAULT_TIMEOUT_MS = 20_000;
+    private static final int DEFAULT_MAX_BODY_BYTES = 5 * 1024 * 1024;
+    private static final int BUFFER_SIZE = 16 * 1024;
+    private static final int META_SNIFF_BYTES = 4096;
+    // <meta charset="windows-1251"> и <meta http-equiv="Content-Type" content="text/html; charset=windows-1251">
+    private static final Pattern META_CHARSET = Pattern.compile(
+            "<meta[^>]+charset\\s*=\\s*[\"']?\\s*([\\w.:-]+)", Pattern.CASE_INSENSITIVE);
+
+    private final SitesList sitesList;
+    private final ExecutorService executor;
+    private final HttpClient client;
+
+    public PageFetcher(SitesList sitesList) {
+        this.sitesList = sitesList;
+        this.executor = createExecutor();
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .connectTimeout(Duration.ofMillis(timeoutMs()))
+                .executor(executor)
+                .build();
+    }
+
+    public FetchedPage fetch(String url) throws IOException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(url))
+                .timeout(Duration.ofMillis(timeoutMs()))
+                .header("User-Agent", Optional.ofNullable(sitesList.getUserAgent()).orElse(DEFAULT_USER_AGENT))
+                .header("Referer", Optional.ofNullable(sitesList.getReferer()).orElse(DEFAULT_REFERER))
+                .header("Accept", "text/html,application/xhtml+xml;q=0.9,*/*;q=0.1")
+                .header("Accept-Encoding", "gzip, deflate")
+                .GET()
+                .build();
+
+        HttpResponse<InputStream> response;
+        try {
+            response = client.send(request, HttpResponse.BodyHandlers.ofInputStream());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Загрузка прервана: " + url, e);
+        }
+
+        String contentType = response.headers().firstValue("Content-Type").orElse("");
+        try (InputStream raw = response.body()) {
+            if (!isHtml(contentType)) {
+                // закрытие потока отменяет подписку, тело не докачивается
+                throw new UnsupportedContentTypeException(url, contentType, response.statusCode());
+            }
+            String encoding = response.headers().firstValue("Content-Encoding").orElse("");
+            byte[] bytes;
+            boolean truncated;
+            try (InputStream in = decode(raw, encoding)) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                truncated = copyLimited(in, out, maxBodyBytes());
+                bytes = out.toByteArray();
+            }
+            if (truncated) {
+                logger.warn("Тело страницы обрезано до {} байт: {}", bytes.length, url);
+            }
+            String body = new String(bytes, charsetOf(contentType, bytes));
+            return new FetchedPage(response.uri().toString(), response.statusCode(), contentType, body, bytes.length, truncated);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private boolean copyLimited(InputStream in, ByteArrayOutputStream out, int limit) throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            int allowed = Math.min(read, limit - out.size());
+            out.write(buffer, 0, allowed);
+            if (allowed < read || out.size() >= limit && in.read() != -1) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private InputStream decode(InputStream in, String encoding) throws IOException {
+        String enc = encoding.trim().toLowerCase(Locale.ROOT);
+        if (enc.equals("gzip") || enc.equals("x-gzip")) return new GZIPInputStream(in, BUFFER_SIZE);
+        if (enc.equals("deflate")) return new InflaterInputStream(in);
+        return in;
+    }
+
+    private boolean isHtml(String contentType) {
+        if (contentType.isBlank()) return true; // сервер не указал тип — пробуем как HTML
+        String type = contentType.toLowerCase(Locale.ROOT);
+        return type.startsWith("text/html") || type.startsWith("application/xhtml+xml");
+    }
+
+    /**
+     * Кодировка тела: из Content-Type, иначе по BOM, иначе из meta charset /
+     * http-equiv в начале документа (так делал Jsoup.connect), иначе UTF-8.
+     */
+    static Charset charsetOf(String contentType, byte[] body) {
+        for (String part : contentType.split(";")) {
+            String p = part.trim();
+            if (p.toLowerCase(Locale.ROOT).startsWith("charset=")) {
+                Charset charset = charsetNamed(p.substring("charset=".length()));
+                if (charset != null) return charset;
+                break;
+            }
+        }
+        if (body.length >= 3 && (body[0] & 0xFF) == 0xEF && (body[1] & 0xFF) == 0xBB && (body[2] & 0xFF) == 0xBF) {
+            return StandardCharsets.UTF_8;
+        }
+        if (body.length >= 2 && (body[0] & 0xFF) == 0xFE && (body[1] & 0xFF) == 0xFF) return StandardCharsets.UTF_16BE;
+        if (body.length >= 2 && (body[0] & 0xFF) == 0xFF && (body[1] & 0xFF) == 0xFE) return StandardCharsets.UTF_16LE;
+
+        String head = new String(body, 0, Math.min(body.length, META_SNIFF_BYTES), StandardCharsets.ISO_8859_1);
+        Matcher m = META_CHARSET.matcher(head);
+        if (m.find()) {
+            Charset charset = charsetNamed(m.group(1));
+            if (charset != null) return charset;
+        }
+        return StandardCharsets.UTF_8;
+    }
+
+    private static Charset charsetNamed(String name) {
+        try {
+            return Charset.forName(name.replace("\"", "").replace("'", "").trim());
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private int timeoutMs() {
+        Integer t = sitesList.getFetchTimeoutMs();
+        return t == null || t <= 0 ? DEFAULT_TIMEOUT_MS : t;
+    }
+
+    private int maxBodyBytes() {
+        Integer m = sitesList.getMaxBodyBytes();
+        return m == null || m <= 0 ? DEFAULT_MAX_BODY_BYTES : m;
+    }
+
+    private static ExecutorService createExecutor() {
+        // на Java 21+ используем виртуальные потоки, на 17 — обычный кеширующий пул
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(r -> {
+                Thread t = new Thread(r, "page-fetcher");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+    }
+
+    /**
+     * Сервер ответил, но не HTML-документом. Это не признак перегрузки сайта:
+     * ограничитель параллельности должен получить statusCode, а не ошибку соединения.
+     */
+    @Getter
+    public static class UnsupportedContentTypeException extends IOException {
+        private final int statusCode;
+
+        public UnsupportedContentTypeException(String url, String contentType, int statusCode) {
+            super("Неподдерживаемый тип содержимого " + contentType + ": " + url);
+            this.statusCode = statusCode;
+        }
+    }
+
+    @Getter
+    @RequiredArgsConstructor
+    public static class FetchedPage {
+        private final String url;
+        private final int statusCode;
+        private final String contentType;
+        private final String body;
+        private final int size;
+        private final boolean truncated;
+
+        public Document parse() {
+            return Jsoup.parse(body, url);
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package searchengine.services;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import searchengine.config.ClusterSettings;
+import searchengine.model.ClusterMemberEntity;
+import searchengine.model.CrawlLeaseEntity;
+import searchengine.repositories.ClusterMemberRepository;
+import searchengine.repositories.CrawlLeaseRepository;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.net.URI;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Аренда партиций обхода для совместной работы нескольких экземпляров.
+ * Сайт попадает в партицию по хешу хоста; экземпляр обходит только сайты
+ * из арендованных партиций. Аренда продлевается heartbeat-ом, а партиции
+ * упавшего узла по истечении срока аренды забирают оставшиеся узлы.
+ * Состав кластера ведётся отдельно от аренды: каждый узел продлевает свою
+ * строку cluster_member, и равная доля считается по живым участникам, так что
+ * только что запущенный узел без партиций тоже учитывается и получает свою долю.
+ * При cluster.enabled=false все партиции считаются своими.
+ */
+@Service
+public class PartitionLeaseService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PartitionLeaseService.class);
+
+    private final CrawlLeaseRepository leaseRepository;
+    private final ClusterMemberRepository memberRepository;
+    private final ClusterSettings settings;
+    private final String nodeId;
+
+    private volatile Set<Integer> held = Set.of();
+    private volatile long heldUntil;
+
+    public PartitionLeaseService(CrawlLeaseRepository leaseRepository,
+                                 ClusterMemberRepository memberRepository,
+                                 ClusterSettings settings) {
+        this.leaseRepository = leaseRepository;
+        this.memberRepository = memberRepository;
+        this.settings = settings;
+        this.nodeId = settings.getNodeId() == null || settings.getNodeId().isBlank()
+                ? UUID.randomUUID().toString()
+                : settings.getNodeId();
+    }
+
+    @PostConstruct
+    public void init() {
+        if (!settings.isEnabled()) return;
+        Set<Integer> existing = new HashSet<>(leaseRepository.findAll().stream()
+                .map(CrawlLeaseEntity::getPartitionNo).toList());
+        for (int p = 0; p < settings.getPartitions(); p++) {
+            if (existing.contains(p)) continue;
+            CrawlLeaseEntity lease = new CrawlLeaseEntity();
+            lease.setPartitionNo(p);
+            try {
+                leaseRepository.save(lease);
+            } catch (DataIntegrityViolationException ignored) {
+                // партицию одновременно создал другой узел
+            }
+        }
+        logger.info("Узел {} работает в кластерном режиме, партиций: {}", nodeId, settings.getPartitions());
+    }
+
+    public boolean isEnabled() {
+        return settings.isEnabled();
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    public int partitionOf(String url) {
+        String host;
+        try {
+            host = URI.create(url).getHost();
+        } catch (Exception e) {
+            host = null;
+        }
+        String key = host == null ? url : host.toLowerCase(Locale.ROOT);
+        return Math.floorMod(key.hashCode(), settings.getPartitions());
+    }
+
+    public boolean ownsUrl(String url) {
+        if (!settings.isEnabled()) return true;
+        return System.currentTimeMillis() < heldUntil && held.contains(partitionOf(url));
+    }
+
+    /**
+     * Продлевает членство в кластере и свои аренды, добирает свободные и
+     * просроченные партиции до равной доли и отдаёт лишние, если они не заняты
+     * обходом (busy): освобождённые партиции забирает узел, у которого их меньше доли.
+     */
+    public synchronized void heartbeat(Set<Integer> busy) {
+        if (!settings.isEnabled()) return;
+        long started = System.currentTimeMillis();
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime expires = now.plusSeconds(settings.getLeaseTtlSeconds());
+
+        ClusterMemberEntity member = new ClusterMemberEntity();
+        member.setNodeId(nodeId);
+        member.setHeartbeatAt(now);
+        member.setExpiresAt(expires);
+        memberRepository.save(member);
+        memberRepository.deleteExpired(now);
+
+        leaseRepository.renew(nodeId, now, expires);
+        Set<Integer> mine = new HashSet<>(leaseRepository.findHeld(nodeId, now));
+
+        long liveNodes = memberRepository.countLive(now);
+        int fairShare = (int) Math.ceil(settings.getPartitions() / (double) Math.max(1, liveNodes));
+
+        if (mine.size() < fairShare) {
+            List<Integer> claimable = new ArrayList<>(leaseRepository.findClaimable(now));
+            Collections.shuffle(claimable);
+            for (Integer p : claimable) {
+                if (mine.size() >= fairShare) break;
+                if (leaseRepository.claim(p, nodeId, now, expires) > 0) {
+                    logger.info("Узел {} арендовал партицию {}", nodeId, p);
+                    mine.add(p);
+                }
+            }
+        } else if (mine.size() > fairShare) {
+            for (Integer p : new ArrayList<>(mine)) {
+                if (mine.size() <= fairShare) break;
+                if (busy.contains(p)) continue;
+                if (leaseRepository.release(p, nodeId) > 0) {
+                    logger.info("Узел {} освободил партицию {}", nodeId, p);
+                    mine.remove(p);
+                }
+            }
+        }
+
+        held = Set.copyOf(mine);
+        heldUntil = started + settings.getLeaseTtlSeconds() * 1000L;
+    }
+
+    @PreDestroy
+    public void releaseAll() {
+        if (!settings.isEnabled()) return;
+        for (Integer p : held) {
+            leaseRepository.release(p, nodeId);
+        }
+        held = Set.of();
+        if (memberRepository.existsById(nodeId)) memberRepository.deleteById(nodeId);
+    }
+}
@@ -0,0 +1,124 @@
+package searchengine.services;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import searchengine.crawler.RevisitPolicy;
+import searchengine.model.PageEntity;
+import searchengine.model.SiteEntity;
+import searchengine.model.SiteStatus;
+import searchengine.repositories.PageRepository;
+import searchengine.repositories.SiteRepository;
+
+import javax.annotation.PreDestroy;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Фоновое поддержание свежести: страницы проиндексированных сайтов посещаются
+ * повторно по мере наступления их срока (см. {@link searchengine.crawler.RevisitPolicy}),
+ * без полного обхода. Каждому сайту раз в такт начисляется бюджет
+ * pages-per-minute; неизрасходованный остаток копится не больше чем на минуту.
+ * Загрузка идёт в собственном пуле, чтобы не занимать поток планировщика.
+ */
+@Service
+public class RevisitScheduler {
+
+    private static final Logger logger = LoggerFactory.getLogger(RevisitScheduler.class);
+
+    private final SiteRepository siteRepository;
+    private final PageRepository pageRepository;
+    private final IndexingServiceImpl indexingService;
+    private final PartitionLeaseService leaseService;
+    private final RevisitPolicy revisitPolicy;
+    private final boolean enabled;
+    private final double pagesPerMinute;
+    private final long tickMs;
+    private final ExecutorService executor;
+
+    private final Map<Integer, Double> credits = new ConcurrentHashMap<>();
+    private final Set<Integer> running = ConcurrentHashMap.newKeySet();
+
+    public RevisitScheduler(SiteRepository siteRepository,
+                            PageRepository pageRepository,
+                            IndexingServiceImpl indexingService,
+                            PartitionLeaseService leaseService,
+                            RevisitPolicy revisitPolicy,
+                            @Value("${revisit.enabled:false}") boolean enabled,
+                            @Value("${revisit.pages-per-minute:30}") double pagesPerMinute,
+                            @Value("${revisit.tick-ms:10000}") long tickMs,
+                            @Value("${revisit.parallelism:2}") int parallelism) {
+        this.siteRepository = siteRepository;
+        this.pageRepository = pageRepository;
+        this.indexingService = indexingService;
+        this.leaseService = leaseService;
+        this.revisitPolicy = revisitPolicy;
+        this.enabled = enabled;
+        this.pagesPerMinute = pagesPerMinute;
+        this.tickMs = tickMs;
+        this.executor = Executors.newFixedThreadPool(Math.max(1, parallelism));
+    }
+
+    @Scheduled(fixedDelayString = "${revisit.tick-ms:10000}", initialDelayString = "${revisit.tick-ms:10000}")
+    public void tick() {
+        if (!enabled || indexingService.isIndexing()) return;
+        double perTick = pagesPerMinute * tickMs / 60_000.0;
+        double cap = Math.max(1, pagesPerMinute);
+        LocalDateTime now = LocalDateTime.now();
+
+        for (SiteEntity site : siteRepository.findAll()) {
+            if (site.getStatus() != SiteStatus.INDEXED || !leaseService.ownsUrl(site.getUrl())) continue;
+            if (running.contains(site.getId())) continue;
+            double credit = Math.min(credits.getOrDefault(site.getId(), 0.0) + perTick, cap);
+            int limit = (int) credit;
+            if (limit == 0) {
+                credits.put(site.getId(), credit);
+                continue;
+            }
+            List<PageEntity> due = pageRepository.findDueForRevisit(site, now, PageRequest.of(0, limit));
+            credits.put(site.getId(), credit - due.size());
+            if (due.isEmpty()) continue;
+
+            running.add(site.getId());
+            executor.submit(() -> {
+                try {
+                    revisit(site, due);
+                } finally {
+                    running.remove(site.getId());
+                }
+            });
+        }
+    }
+
+    private void revisit(SiteEntity site, List<PageEntity> pages) {
+        long started = System.currentTimeMillis();
+        int changed = 0;
+        int failed = 0;
+        for (PageEntity page : pages) {
+            if (indexingService.isIndexing()) break; // полный обход сам перепишет страницы
+            try {
+                if (indexingService.revisitPage(site, page)) changed++;
+            } catch (Exception e) {
+                failed++;
+                logger.debug("Повторное посещение {}{} не удалось: {}", site.getUrl(), page.getPath(), e.toString());
+                revisitPolicy.postpone(page, LocalDateTime.now());
+                pageRepository.save(page);
+            }
+        }
+        logger.info("Повторное посещение {}: {} страниц, изменилось {}, ошибок {}, {} мс",
+                site.getUrl(), pages.size(), changed, failed, System.currentTimeMillis() - started);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,112 @@
+package searchengine.services;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Ограничение одновременных поисковых запросов: не более max-concurrent
+ * выполняются сразу, до max-queue ждут свободного места не дольше
+ * queue-timeout-ms, остальные сразу получают отказ (503 + Retry-After).
+ */
+@Service
+public class SearchAdmission {
+
+    private final int maxConcurrent;
+    private final Semaphore permits;
+    private final int maxQueue;
+    private final long queueTimeoutMs;
+    private final long deadlineMs;
+    private final int retryAfterSeconds;
+
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final AtomicLong admitted = new AtomicLong();
+    private final AtomicLong queued = new AtomicLong();
+    private final AtomicLong shedQueueFull = new AtomicLong();
+    private final AtomicLong shedQueueTimeout = new AtomicLong();
+    private final AtomicLong deadlineExceeded = new AtomicLong();
+    private final AtomicLong queueWaitTotalMs = new AtomicLong();
+    private final AtomicLong queueWaitMaxMs = new AtomicLong();
+
+    public SearchAdmission(@Value("${search.admission.max-concurrent:8}") int maxConcurrent,
+                           @Value("${search.admission.max-queue:32}") int maxQueue,
+                           @Value("${search.admission.queue-timeout-ms:1000}") long queueTimeoutMs,
+                           @Value("${search.admission.deadline-ms:5000}") long deadlineMs,
+                           @Value("${search.admission.retry-after-seconds:1}") int retryAfterSeconds) {
+        this.maxConcurrent = Math.max(1, maxConcurrent);
+        this.permits = new Semaphore(this.maxConcurrent, true);
+        this.maxQueue = maxQueue;
+        this.queueTimeoutMs = queueTimeoutMs;
+        this.deadlineMs = deadlineMs;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    /** true — запрос допущен, после выполнения обязателен {@link #release()}. */
+    public boolean tryAcquire() {
+        if (permits.tryAcquire()) {
+            admitted.incrementAndGet();
+            return true;
+        }
+        if (waiting.incrementAndGet() > maxQueue) {
+            waiting.decrementAndGet();
+            shedQueueFull.incrementAndGet();
+            return false;
+        }
+        queued.incrementAndGet();
+        long started = System.currentTimeMillis();
+        try {
+            boolean ok = permits.tryAcquire(queueTimeoutMs, TimeUnit.MILLISECONDS);
+            long waited = System.currentTimeMillis() - started;
+            queueWaitTotalMs.addAndGet(waited);
+            queueWaitMaxMs.accumulateAndGet(waited, Math::max);
+            if (ok) {
+                admitted.incrementAndGet();
+            } else {
+                shedQueueTimeout.incrementAndGet();
+            }
+            return ok;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            shedQueueTimeout.incrementAndGet();
+            return false;
+        } finally {
+            waiting.decrementAndGet();
+        }
+    }
+
+    public void release() {
+        permits.release();
+    }
+
+    public void onDeadlineExceeded() {
+        deadlineExceeded.incrementAndGet();
+    }
+
+    public long getDeadlineMs() {
+        return deadlineMs;
+    }
+
+    public int getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+
+    public Map<String, Object> metrics() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("inFlight", maxConcurrent - permits.availablePermits());
+        m.put("waiting", waiting.get());
+        m.put("admitted", admitted.get());
+        m.put("queued", queued.get());
+        m.put("shedQueueFull", shedQueueFull.get());
+        m.put("shedQueueTimeout", shedQueueTimeout.get());
+        m.put("deadlineExceeded", deadlineExceeded.get());
+        m.put("queueWaitAvgMs", queued.get() == 0 ? 0 : queueWaitTotalMs.get() / queued.get());
+        m.put("queueWaitMaxMs", queueWaitMaxMs.get());
+        return m;
+    }
+}
@@ -1,18 +1,30 @@
 package searchengine.services;
 
+import it.unimi.dsi.fastutil.ints.Int2DoubleOpenHashMap;
 import lombok.RequiredArgsConstructor;
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
+import org.roaringbitmap.RoaringBitmap;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.orm.jpa.EntityManagerHolder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import searchengine.dto.search.SearchFacets;
 import searchengine.dto.search.SearchResultDto;
+import searchengine.dto.search.ShardSearchRequest;
+import searchengine.dto.search.ShardSiteHits;
+import searchengine.dto.search.ShardSiteStats;
 import searchengine.model.*;
 import searchengine.repositories.IndexRepository;
 import searchengine.repositories.LemmaRepository;
+import searchengine.repositories.PageRepository;
 import searchengine.repositories.SiteRepository;
-import searchengine.utils.LemmaFinder;
+import searchengine.utils.BooleanQuery;
+import searchengine.utils.QueryProfile;
+import searchengine.utils.SearchDeadline;
 
+import javax.persistence.EntityManagerFactory;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -22,96 +34,270 @@ public class SearchService {
 
     private final LemmaRepository lemmaRepository;
     private final IndexRepository indexRepository;
+    private final PageRepository pageRepository;
     private final SiteRepository siteRepository;
+    private final TermDictionary termDictionary;
+    private final PageFacets pageFacets;
+    private final IndexGeneration indexGeneration;
+    private final EntityManagerFactory entityManagerFactory;
 
     @Value("${search.too-frequent-percent:0.8}")
     private double TOO_FREQUENT_PERCENT;
 
+    /**
+     * Страница выдачи; счётчики совпадений по всей выдаче добавляются в facets.
+     */
     @Transactional(readOnly = true)
-    public List<SearchResultDto> search(String query, String siteUrl, int offset, int limit) throws Exception {
+    public List<SearchResultDto> search(String query, String siteUrl, int offset, int limit,
+                                        SearchFacets facets) throws Exception {
         if (query == null || query.isBlank()) {
             throw new IllegalArgumentException("Задан пустой поисковый запрос");
         }
 
 
-        Map<String, Integer> queryLemmas = LemmaFinder.getInstance().collectLemmas(query);
-        if (queryLemmas.isEmpty()) return Collections.emptyList();
+        BooleanQuery.Parsed parsed;
+        try (var p = QueryProfile.phase("parse")) {
+            parsed = BooleanQuery.analyze(query);
+        }
+        if (parsed.getPositive().isEmpty()) return Collections.emptyList();
+        limitQueriesToDeadline();
+
+
+        List<SiteEntity> sites;
+        Set<Integer> termIds;
+        try (var p = QueryProfile.phase("sites")) {
+            sites = siteUrl == null
+                    ? siteRepository.findAll()
+                    : siteRepository.findByUrl(siteUrl).map(List::of)
+                    .orElseThrow(() -> new IllegalArgumentException("Указанный сайт не найден: " + siteUrl));
+            termIds = termIds(parsed.allLemmas());
+        }
+        List<SearchResultDto> allResults = new ArrayList<>();
+        // поколение читается один раз на запрос, а не для каждого сайта
+        long generation = facets.getCodes() != null ? indexGeneration.current() : -1;
 
+        for (SiteEntity site : sites) {
+            SearchDeadline.check();
+            Map<String, LemmaEntity> active = new HashMap<>();
+            try (var p = QueryProfile.phase("lemmas")) {
+                long pagesCount = pageRepository.countBySite(site);
+                if (pagesCount == 0 || !lemmaRepository.existsBySite(site)) {
+                    throw new IllegalArgumentException("Для сайта " + site.getUrl() + " ещё не построен индекс");
+                }
 
-        List<SiteEntity> sites = siteUrl == null
-                ? siteRepository.findAll()
-                : siteRepository.findByUrl(siteUrl).map(List::of)
-                .orElseThrow(() -> new IllegalArgumentException("Указанный сайт не найден: " + siteUrl));
+                if (termIds.isEmpty()) continue;
 
-        List<SearchResultDto> allResults = new ArrayList<>();
+                int threshold = (int) (pagesCount * TOO_FREQUENT_PERCENT);
 
-        for (SiteEntity site : sites) {
-            if (site.getPages().isEmpty() || site.getLemmas().isEmpty()) {
-                throw new IllegalArgumentException("Для сайта " + site.getUrl() + " ещё не построен индекс");
+                // слишком частые леммы выпадают из положительной части запроса,
+                // а исключения применяются всегда
+                for (LemmaEntity lemma : lemmaRepository.findBySiteAndTermIdIn(site, termIds)) {
+                    String name = termDictionary.lemmaOf(lemma.getTermId());
+                    if (parsed.getNegative().contains(name)
+                            || parsed.getPositive().contains(name) && lemma.getFrequency() < threshold) {
+                        active.put(name, lemma);
+                    }
+                }
             }
 
-            int pagesCount = site.getPages().size();
-            int threshold = (int) (pagesCount * TOO_FREQUENT_PERCENT);
+            if (active.keySet().stream().noneMatch(parsed.getPositive()::contains)) continue;
 
-            List<LemmaEntity> lemmas = lemmaRepository.findBySite(site).stream()
-                    .filter(l -> queryLemmas.containsKey(l.getLemma()))
-                    .filter(l -> l.getFrequency() < threshold)
-                    .sorted(Comparator.comparingInt(LemmaEntity::getFrequency))
-                    .collect(Collectors.toList());
+            ShardSiteHits hits = rankSite(site, parsed, active, parsed.getPositive(), offset + limit,
+                    facets.getCodes() != null, generation);
+            facets.add(hits);
+            for (SearchResultDto dto : hits.getHits()) {
+                dto.setRelevance(dto.getRelevance() / hits.getMaxAbsRelevance());
+                allResults.add(dto);
+            }
+        }
 
-            if (lemmas.isEmpty()) continue;
+        return allResults.stream()
+                .sorted(Comparator.comparingDouble(SearchResultDto::getRelevance).reversed())
+                .skip(offset)
+                .limit(limit)
+                .toList();
+    }
 
+    /**
+     * Шардовый запрос, фаза 1: локальные число страниц и частоты лемм по сайтам,
+     * из которых координатор собирает глобальную статистику для фильтра частых лемм.
+     */
+    @Transactional(readOnly = true)
+    public List<ShardSiteStats> shardStats(Set<String> queryLemmas, String siteUrl) {
+        limitQueriesToDeadline();
+        List<SiteEntity> sites = siteUrl == null
+                ? siteRepository.findAll()
+                : siteRepository.findByUrl(siteUrl).map(List::of).orElse(List.of());
 
-            Set<PageEntity> pages = new HashSet<>(
-                    indexRepository.findByLemma(lemmas.get(0)).stream()
-                            .map(IndexEntity::getPage).toList()
-            );
+        Set<Integer> termIds = termIds(queryLemmas);
+        List<ShardSiteStats> stats = new ArrayList<>();
+        for (SiteEntity site : sites) {
+            Map<String, Integer> frequencies = new HashMap<>();
+            if (!termIds.isEmpty()) {
+                lemmaRepository.findBySiteAndTermIdIn(site, termIds)
+                        .forEach(l -> frequencies.put(termDictionary.lemmaOf(l.getTermId()), l.getFrequency()));
+            }
+            stats.add(new ShardSiteStats(site.getUrl(), (int) pageRepository.countBySite(site), frequencies));
+        }
+        return stats;
+    }
 
-            for (int i = 1; i < lemmas.size(); i++) {
-                Set<PageEntity> nextPages = indexRepository.findByLemma(lemmas.get(i)).stream()
-                        .map(IndexEntity::getPage).collect(Collectors.toSet());
-                pages.retainAll(nextPages);
-                if (pages.isEmpty()) break;
+    /**
+     * Шардовый запрос, фаза 2: локальные top-k по каждому сайту с абсолютной
+     * релевантностью и локальным максимумом для глобальной нормализации.
+     */
+    @Transactional(readOnly = true)
+    public List<ShardSiteHits> shardSearch(ShardSearchRequest request) {
+        BooleanQuery.Parsed parsed = BooleanQuery.analyze(request.getQuery());
+        limitQueriesToDeadline();
+        List<ShardSiteHits> result = new ArrayList<>();
+        long generation = request.isFacets() ? indexGeneration.current() : -1;
+        request.getLemmasBySite().forEach((siteUrl, lemmaNames) -> {
+            Optional<SiteEntity> siteOpt = siteRepository.findByUrl(siteUrl);
+            if (siteOpt.isEmpty() || lemmaNames.isEmpty()) return;
+            SiteEntity site = siteOpt.get();
+
+            Set<Integer> termIds = termIds(lemmaNames);
+            // лемма прошла глобальный фильтр, но отсутствует на шарде — её карта пустая
+            Map<String, LemmaEntity> active = new HashMap<>();
+            lemmaNames.forEach(name -> active.put(name, null));
+            if (!termIds.isEmpty()) {
+                lemmaRepository.findBySiteAndTermIdIn(site, termIds)
+                        .forEach(l -> active.put(termDictionary.lemmaOf(l.getTermId()), l));
             }
+            result.add(rankSite(site, parsed, active, request.getQueryLemmas(), request.getTopK(),
+                    request.isFacets(), generation));
+        });
+        return result;
+    }
 
-            if (pages.isEmpty()) continue;
+    /**
+     * Ограничивает запросы текущей транзакции остатком срока поиска: Spring
+     * передаёт оставшееся время в javax.persistence.query.timeout каждого запроса
+     * репозиториев, и долгая выборка обрывается самой БД, а не дожидается
+     * следующей проверки {@link SearchDeadline#check()}.
+     */
+    private void limitQueriesToDeadline() {
+        SearchDeadline.check();
+        long remaining = SearchDeadline.remainingMs();
+        if (remaining == Long.MAX_VALUE) return;
+        EntityManagerHolder holder = (EntityManagerHolder) TransactionSynchronizationManager.getResource(entityManagerFactory);
+        if (holder != null) holder.setTimeoutInMillis(Math.max(1, remaining));
+    }
 
+    private Set<Integer> termIds(Collection<String> lemmas) {
+        Set<Integer> ids = new HashSet<>();
+        for (String lemma : lemmas) {
+            int id = termDictionary.idOf(lemma);
+            if (id != TermDictionary.UNKNOWN) ids.add(id);
+        }
+        return ids;
+    }
 
-            Map<PageEntity, Double> absRel = new HashMap<>();
-            for (PageEntity page : pages) {
-                double rankSum = 0;
-                for (LemmaEntity lemma : lemmas) {
-                    rankSum += indexRepository.findByPageAndLemma(page, lemma)
-                            .map(IndexEntity::getRank).orElse(0f);
+    /**
+     * Вычисляет булев запрос над картами id страниц и ранжирует совпадения.
+     * Для лемм положительной части вместе с картой собираются суммы rank,
+     * поэтому после вычисления выражения обращений к индексу больше нет;
+     * страницы загружаются только для top-k. Счётчики фасетов берутся
+     * из той же карты совпадений.
+     */
+    private ShardSiteHits rankSite(SiteEntity site, BooleanQuery.Parsed parsed, Map<String, LemmaEntity> active,
+                                   Set<String> snippetLemmas, int topK, boolean facets, long generation) {
+        Map<String, RoaringBitmap> postings = new HashMap<>();
+        Int2DoubleOpenHashMap scores = new Int2DoubleOpenHashMap();
+        try (var phase = QueryProfile.phase("postings")) {
+            active.forEach((name, lemma) -> {
+                SearchDeadline.check();
+                RoaringBitmap bits = new RoaringBitmap();
+                if (lemma != null && parsed.getPositive().contains(name)) {
+                    for (IndexRepository.PagePosting p : indexRepository.findPostingsByLemma(site.getId(), lemma)) {
+                        bits.add(p.getPageId());
+                        scores.addTo(p.getPageId(), p.getRank());
+                    }
+                } else if (lemma != null) {
+                    indexRepository.findPageIdsByLemma(site.getId(), lemma).forEach(bits::add);
                 }
-                absRel.put(page, rankSum);
+                bits.runOptimize();
+                postings.put(name, bits);
+                QueryProfile.posting(name, bits.getCardinality());
+            });
+        }
+
+        RoaringBitmap matched;
+        try (var p = QueryProfile.phase("evaluate")) {
+            matched = BooleanQuery.evaluate(parsed.getRoot(),
+                    term -> termPostings(parsed.getLemmasByWord().get(term.getWord()), postings),
+                    () -> RoaringBitmap.bitmapOf(pageRepository.findIdsBySite(site).stream().mapToInt(Integer::intValue).toArray()));
+        }
+        int matchedCount = matched.getCardinality();
+        QueryProfile.count("matchedPages", matchedCount);
+
+        if (matched.isEmpty()) return new ShardSiteHits(site.getUrl(), 0, List.of(), 0, null, null);
+
+        Map<String, Integer> codes = null;
+        Map<String, Integer> sections = null;
+        if (facets) {
+            try (var p = QueryProfile.phase("facets")) {
+                PageFacets.Counts counts = pageFacets.count(site, matched, generation);
+                codes = counts.getCodes();
+                sections = counts.getSections();
             }
+        }
 
-            double maxAbs = absRel.values().stream().max(Double::compare).orElse(1.0);
+        double maxAbs = 0;
+        List<Integer> ordered;
+        try (var p = QueryProfile.phase("rank")) {
+            Comparator<Integer> byScore = Comparator.<Integer>comparingDouble(id -> scores.get(id.intValue()))
+                    .thenComparing(Comparator.reverseOrder());
+            PriorityQueue<Integer> top = new PriorityQueue<>(byScore);
+            int limit = Math.max(0, topK);
+            for (int pageId : matched) {
+                maxAbs = Math.max(maxAbs, scores.get(pageId));
+                if (limit == 0) continue;
+                top.add(pageId);
+                if (top.size() > limit) top.poll();
+            }
+            ordered = new ArrayList<>(top);
+            ordered.sort(byScore.reversed());
+        }
+        if (maxAbs <= 0) maxAbs = 1.0;
 
+        Map<Integer, PageEntity> pages;
+        try (var p = QueryProfile.phase("pages")) {
+            pages = pageRepository.findAllById(ordered).stream()
+                    .collect(Collectors.toMap(PageEntity::getId, page -> page));
+        }
 
-            for (PageEntity page : absRel.keySet()) {
-                double relevance = absRel.get(page) / maxAbs;
+        // сниппеты строим только для страниц, которые могут попасть в выдачу
+        List<SearchResultDto> hits = new ArrayList<>();
+        try (var p = QueryProfile.phase("snippets")) {
+            for (int pageId : ordered) {
+                SearchDeadline.check();
+                PageEntity page = pages.get(pageId);
+                if (page == null) continue;
                 Document doc = Jsoup.parse(page.getContent());
-                String title = doc.title();
-                String snippet = makeSnippet(doc.text(), queryLemmas.keySet());
-
-                allResults.add(new SearchResultDto(
+                hits.add(new SearchResultDto(
                         site.getUrl(),
                         site.getName(),
                         page.getPath(),
-                        title,
-                        snippet,
-                        relevance
+                        doc.title(),
+                        makeSnippet(doc.text(), snippetLemmas),
+                        scores.get(pageId)
                 ));
             }
         }
+        return new ShardSiteHits(site.getUrl(), maxAbs, hits, matchedCount, codes, sections);
+    }
 
-        return allResults.stream()
-                .sorted(Comparator.comparingDouble(SearchResultDto::getRelevance).reversed())
-                .skip(offset)
-                .limit(limit)
-                .toList();
+    private RoaringBitmap termPostings(Set<String> lemmas, Map<String, RoaringBitmap> postings) {
+        if (lemmas == null) return null;
+        RoaringBitmap result = null;
+        for (String lemma : lemmas) {
+            RoaringBitmap bits = postings.get(lemma);
+            if (bits == null) continue;
+            result = result == null ? bits : RoaringBitmap.and(result, bits);
+        }
+        return result;
     }
 
     private String makeSnippet(String text, Set<String> lemmas) {
@@ -0,0 +1,168 @@
+package searchengine.services;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import searchengine.config.ShardSettings;
+import searchengine.dto.search.*;
+import searchengine.utils.BooleanQuery;
+import searchengine.utils.QueryProfile;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Координатор распределённого поиска (scatter-gather).
+ * Фаза 1 собирает со всех шардов число страниц и частоты лемм по сайтам
+ * и применяет фильтр слишком частых лемм к глобальной статистике.
+ * Булево выражение запроса каждый шард разбирает и вычисляет сам.
+ * Фаза 2 получает с шардов локальные top-k с абсолютной релевантностью,
+ * нормализует её по глобальному максимуму сайта и сливает выдачу.
+ * Шарды, не ответившие за timeout-ms, исключаются и попадают в failedShards.
+ */
+@Service
+@RequiredArgsConstructor
+public class ShardedSearchService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ShardedSearchService.class);
+
+    private final ShardSettings settings;
+    private final ObjectMapper objectMapper;
+    private final HttpClient client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(2))
+            .build();
+
+    @Value("${search.too-frequent-percent:0.8}")
+    private double TOO_FREQUENT_PERCENT;
+
+    public boolean isEnabled() {
+        return !settings.getShards().isEmpty();
+    }
+
+    public ShardedSearchResult search(String query, String siteUrl, int offset, int limit, SearchFacets facets) {
+        if (query == null || query.isBlank()) {
+            throw new IllegalArgumentException("Задан пустой поисковый запрос");
+        }
+        List<String> shards = settings.getShards();
+        Set<String> failed = new LinkedHashSet<>();
+
+        BooleanQuery.Parsed parsed = BooleanQuery.analyze(query);
+        if (parsed.getPositive().isEmpty()) return new ShardedSearchResult(List.of(), shards.size(), List.of());
+
+        Map<String, List<ShardSiteStats>> statsByShard;
+        try (var p = QueryProfile.phase("shardStats")) {
+            statsByShard = scatter(shards, "/api/shard/stats",
+                    new ShardStatsRequest(parsed.allLemmas(), siteUrl),
+                    new TypeReference<>() {}, failed);
+        }
+
+        Map<String, Integer> pagesBySite = new HashMap<>();
+        Map<String, Map<String, Integer>> freqBySite = new HashMap<>();
+        statsByShard.values().forEach(list -> list.forEach(st -> {
+            pagesBySite.merge(st.getSite(), st.getPages(), Integer::sum);
+            Map<String, Integer> freq = freqBySite.computeIfAbsent(st.getSite(), k -> new HashMap<>());
+            st.getFrequencies().forEach((lemma, f) -> freq.merge(lemma, f, Integer::sum));
+        }));
+
+        if (siteUrl != null && pagesBySite.getOrDefault(siteUrl, 0) == 0 && failed.isEmpty()) {
+            throw new IllegalArgumentException("Для сайта " + siteUrl + " ещё не построен индекс");
+        }
+
+        Map<String, List<String>> lemmasBySite = new HashMap<>();
+        freqBySite.forEach((site, freq) -> {
+            int threshold = (int) (pagesBySite.getOrDefault(site, 0) * TOO_FREQUENT_PERCENT);
+            // исключения применяются всегда, фильтр частоты — только к положительной части
+            List<String> lemmas = freq.entrySet().stream()
+                    .filter(e -> e.getValue() > 0 && (parsed.getNegative().contains(e.getKey())
+                            || parsed.getPositive().contains(e.getKey()) && e.getValue() < threshold))
+                    .sorted(Map.Entry.comparingByValue())
+                    .map(Map.Entry::getKey)
+                    .toList();
+            if (lemmas.stream().anyMatch(parsed.getPositive()::contains)) lemmasBySite.put(site, lemmas);
+        });
+        if (lemmasBySite.isEmpty()) {
+            return new ShardedSearchResult(List.of(), shards.size(), new ArrayList<>(failed));
+        }
+
+        List<String> alive = shards.stream().filter(s -> !failed.contains(s)).toList();
+        Map<String, List<ShardSiteHits>> hitsByShard;
+        try (var p = QueryProfile.phase("shardSearch")) {
+            hitsByShard = scatter(alive, "/api/shard/search",
+                    new ShardSearchRequest(query, parsed.getPositive(), lemmasBySite, offset + limit,
+                            facets.getCodes() != null),
+                    new TypeReference<>() {}, failed);
+        }
+
+        Map<String, Double> maxAbsBySite = new HashMap<>();
+        hitsByShard.values().forEach(list -> list.forEach(h -> {
+            maxAbsBySite.merge(h.getSite(), h.getMaxAbsRelevance(), Math::max);
+            facets.add(h);
+        }));
+
+        List<SearchResultDto> merged = new ArrayList<>();
+        hitsByShard.values().forEach(list -> list.forEach(h -> h.getHits().forEach(dto -> {
+            dto.setRelevance(dto.getRelevance() / maxAbsBySite.get(h.getSite()));
+            merged.add(dto);
+        })));
+
+        List<SearchResultDto> page = merged.stream()
+                .sorted(Comparator.comparingDouble(SearchResultDto::getRelevance).reversed())
+                .skip(offset)
+                .limit(limit)
+                .toList();
+        return new ShardedSearchResult(page, shards.size(), new ArrayList<>(failed));
+    }
+
+    private <T> Map<String, T> scatter(List<String> shards, String path, Object body,
+                                       TypeReference<T> type, Set<String> failed) {
+        byte[] payload;
+        try {
+            payload = objectMapper.writeValueAsBytes(body);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+
+        Map<String, CompletableFuture<T>> futures = new LinkedHashMap<>();
+        for (String shard : shards) {
+            HttpRequest request = HttpRequest.newBuilder(URI.create(shard + path))
+                    .timeout(Duration.ofMillis(settings.getTimeoutMs()))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(payload))
+                    .build();
+            futures.put(shard, client.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray())
+                    .orTimeout(settings.getTimeoutMs(), TimeUnit.MILLISECONDS)
+                    .thenApply(res -> {
+                        if (res.statusCode() != 200) {
+                            throw new IllegalStateException("HTTP " + res.statusCode());
+                        }
+                        try {
+                            return objectMapper.readValue(res.body(), type);
+                        } catch (Exception e) {
+                            throw new IllegalStateException(e);
+                        }
+                    }));
+        }
+
+        Map<String, T> results = new LinkedHashMap<>();
+        futures.forEach((shard, future) -> {
+            try {
+                results.put(shard, future.join());
+            } catch (Exception e) {
+                logger.warn("Шард {} не ответил на {}: {}", shard, path, e.toString());
+                failed.add(shard);
+            }
+        });
+        return results;
+    }
+}
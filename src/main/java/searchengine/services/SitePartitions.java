@@ -0,0 +1,202 @@
+package searchengine.services;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import searchengine.config.Site;
+import searchengine.config.SitesList;
+
+import javax.annotation.PostConstruct;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Секционирование таблиц page, lemma и idx по site_id (MySQL, LIST): у каждого
+ * сайта своя секция pN, запросы с условием на сайт читают только её, а полный
+ * сброс сайта — удаление секции вместо построчного удаления из общих B-деревьев.
+ *
+ * Включается storage.site-partitioning.enabled. При запуске таблицы переводятся
+ * в секционированный вид: снимаются внешние ключи, idx получает заполненный
+ * site_id, первичные ключи дополняются site_id. Затем секции сверяются с сайтами.
+ * Данные сайтов, убранных из indexing-settings.sites, удаляются вместе с секцией
+ * только при storage.site-partitioning.drop-unconfigured-sites, иначе о них
+ * лишь предупреждает журнал.
+ * Секция нового сайта создаётся сразу после вставки его строки в site.
+ */
+@Service
+@DependsOn("entityManagerFactory")
+public class SitePartitions {
+
+    public static final List<String> TABLES = List.of("idx", "page", "lemma");
+
+    private static final Logger logger = LoggerFactory.getLogger(SitePartitions.class);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final SitesList sitesList;
+    private final boolean dropUnconfigured;
+    private volatile boolean enabled;
+
+    public SitePartitions(JdbcTemplate jdbcTemplate,
+                          SitesList sitesList,
+                          @Value("${storage.site-partitioning.enabled:false}") boolean enabled,
+                          @Value("${storage.site-partitioning.drop-unconfigured-sites:false}") boolean dropUnconfigured) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.sitesList = sitesList;
+        this.enabled = enabled;
+        this.dropUnconfigured = dropUnconfigured;
+    }
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) return;
+        String product = jdbcTemplate.execute(
+                (ConnectionCallback<String>) c -> c.getMetaData().getDatabaseProductName());
+        if (product == null || !product.toLowerCase().contains("mysql")) {
+            logger.warn("Секционирование по сайтам поддерживается только в MySQL, а БД — {}; отключено", product);
+            enabled = false;
+            return;
+        }
+        long started = System.currentTimeMillis();
+        migrate();
+        reconcile();
+        logger.info("Секционирование по сайтам готово за {} мс", System.currentTimeMillis() - started);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /** Создаёт секции нового сайта; вызывается до записи его страниц и лемм. */
+    public synchronized void addSite(int siteId) {
+        if (!enabled) return;
+        for (String table : TABLES) {
+            if (partitions(table).contains(partition(siteId))) continue;
+            try {
+                jdbcTemplate.execute("alter table " + table + " add partition (partition " + partition(siteId)
+                        + " values in (" + siteId + "))");
+            } catch (DataAccessException e) {
+                // секцию мог только что создать другой узел
+                if (!partitions(table).contains(partition(siteId))) throw e;
+            }
+        }
+    }
+
+    /**
+     * Удаляет все страницы, леммы и строки idx сайта вместе с его секциями.
+     * false — секционирование выключено, и удалять нужно обычным способом.
+     */
+    public synchronized boolean dropSite(int siteId) {
+        if (!enabled) return false;
+        long started = System.currentTimeMillis();
+        for (String table : TABLES) {
+            if (!partitions(table).contains(partition(siteId))) continue;
+            jdbcTemplate.execute("alter table " + table + " drop partition " + partition(siteId));
+        }
+        logger.info("Секции сайта {} удалены за {} мс", siteId, System.currentTimeMillis() - started);
+        return true;
+    }
+
+    private void migrate() {
+        List<Map<String, Object>> foreignKeys = jdbcTemplate.queryForList(
+                "select table_name as t, constraint_name as c from information_schema.referential_constraints"
+                        + " where constraint_schema = database()"
+                        + " and (table_name in ('page', 'lemma', 'idx') or referenced_table_name in ('page', 'lemma', 'idx'))");
+        for (Map<String, Object> fk : foreignKeys) {
+            logger.info("Удаляем внешний ключ {}.{}", fk.get("t"), fk.get("c"));
+            jdbcTemplate.execute("alter table " + fk.get("t") + " drop foreign key " + fk.get("c"));
+        }
+
+        // без внешних ключей MySQL не держит для них индексы — создаём явно
+        ensureIndex("idx", "lemma_id");
+        ensureIndex("idx", "page_id");
+
+        List<Integer> siteIds = jdbcTemplate.queryForList("select id from site order by id", Integer.class);
+        for (String table : TABLES) {
+            if (!partitions(table).isEmpty()) continue;
+            StringBuilder ddl = new StringBuilder("alter table ").append(table);
+            if (table.equals("idx")) {
+                int filled = jdbcTemplate.update("update idx i join page p on p.id = i.page_id"
+                        + " set i.site_id = p.site_id where i.site_id is null or i.site_id = 0 or i.site_id <> p.site_id");
+                if (filled > 0) logger.info("Заполнен site_id у {} строк idx", filled);
+                // строки без страницы не получили сайта и попали бы в секцию p0
+                int orphans = jdbcTemplate.update("delete from idx where site_id is null or site_id = 0");
+                if (orphans > 0) logger.info("Удалено {} строк idx без страницы", orphans);
+                ddl.append(" modify site_id int not null,");
+            }
+            ddl.append(" drop primary key, add primary key (id, site_id) partition by list (site_id) (")
+                    // пустая секция p0: LIST не допускает таблицу без секций
+                    .append("partition p0 values in (0)");
+            siteIds.forEach(id -> ddl.append(", partition ").append(partition(id)).append(" values in (").append(id).append(')'));
+            ddl.append(')');
+            long started = System.currentTimeMillis();
+            jdbcTemplate.execute(ddl.toString());
+            logger.info("Таблица {} секционирована по site_id: {} секций за {} мс",
+                    table, siteIds.size() + 1, System.currentTimeMillis() - started);
+        }
+    }
+
+    /**
+     * Секции — ровно по сайтам из таблицы site. Сайты, убранные из конфигурации,
+     * удаляются вместе с данными, только если это явно разрешено.
+     */
+    private void reconcile() {
+        Set<String> configured = Optional.ofNullable(sitesList.getSites()).orElse(List.of()).stream()
+                .map(Site::getUrl)
+                .collect(Collectors.toSet());
+        Map<Integer, String> sites = new HashMap<>();
+        jdbcTemplate.query("select id, url from site", rs -> {
+            sites.put(rs.getInt(1), rs.getString(2));
+        });
+
+        Set<Integer> removed = new HashSet<>();
+        sites.forEach((id, url) -> {
+            if (configured.contains(url)) return;
+            if (!dropUnconfigured) {
+                logger.warn("Сайта {} нет в конфигурации; данные сохранены"
+                        + " (удаление — storage.site-partitioning.drop-unconfigured-sites)", url);
+                return;
+            }
+            logger.warn("Сайт {} убран из конфигурации — удаляем его данные", url);
+            dropSite(id);
+            jdbcTemplate.update("delete from page_blocks where site_id = ?", id);
+            jdbcTemplate.update("delete from site where id = ?", id);
+            removed.add(id);
+        });
+        sites.keySet().removeAll(removed);
+
+        Set<String> expected = new HashSet<>();
+        expected.add("p0");
+        sites.keySet().forEach(id -> expected.add(partition(id)));
+        for (String table : TABLES) {
+            for (String name : partitions(table)) {
+                if (expected.contains(name)) continue;
+                logger.info("Удаляем секцию {} таблицы {}: сайта больше нет", name, table);
+                jdbcTemplate.execute("alter table " + table + " drop partition " + name);
+            }
+        }
+        sites.keySet().forEach(this::addSite);
+    }
+
+    private void ensureIndex(String table, String column) {
+        Integer n = jdbcTemplate.queryForObject("select count(*) from information_schema.statistics"
+                        + " where table_schema = database() and table_name = ? and column_name = ? and seq_in_index = 1",
+                Integer.class, table, column);
+        if (n != null && n > 0) return;
+        jdbcTemplate.execute("create index " + table + "_" + column + " on " + table + " (" + column + ")");
+    }
+
+    private Set<String> partitions(String table) {
+        return new HashSet<>(jdbcTemplate.queryForList("select partition_name from information_schema.partitions"
+                        + " where table_schema = database() and table_name = ? and partition_name is not null",
+                String.class, table));
+    }
+
+    private static String partition(int siteId) {
+        return "p" + siteId;
+    }
+}
@@ -0,0 +1,245 @@
+package searchengine.services;
+
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import searchengine.utils.BooleanQuery;
+import searchengine.utils.LemmaFinder;
+
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Исправление опечаток в запросе в стиле SymSpell. Для каждой леммы словаря
+ * заранее строятся все удаления символов из её префикса на расстоянии до
+ * max-edit-distance; при запросе удаления строятся только для слова запроса,
+ * а кандидаты проверяются точным расстоянием Дамерау–Левенштейна.
+ * Побеждает ближайшая лемма, при равенстве — более частая.
+ *
+ * Исправляются только русские знаменательные слова, ни одна лемма которых
+ * не встречается в индексе.
+ *
+ * Индекс строится из словаря лемм и частот (то есть из таблицы lemma) и
+ * перестраивается в фоне при смене поколения индекса; запросы читают
+ * неизменяемую копию без блокировок.
+ */
+@Service
+@RequiredArgsConstructor
+public class SpellCorrector {
+
+    private static final Logger logger = LoggerFactory.getLogger(SpellCorrector.class);
+
+    private final TermDictionary termDictionary;
+    private final DocumentFrequencies frequencies;
+    private final IndexGeneration generation;
+
+    @Value("${search.spelling.enabled:true}")
+    private boolean enabled;
+
+    @Value("${search.spelling.max-edit-distance:2}")
+    private int maxEditDistance;
+
+    @Value("${search.spelling.prefix-length:7}")
+    private int prefixLength;
+
+    @Value("${search.spelling.min-word-length:4}")
+    private int minWordLength;
+
+    @Value("${search.spelling.min-frequency:1}")
+    private int minFrequency;
+
+    private volatile DeletesIndex index;
+    private volatile long indexedGeneration = -1;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void init() {
+        rebuildIfStale();
+    }
+
+    @Scheduled(fixedDelayString = "${search.spelling.rebuild-ms:60000}",
+            initialDelayString = "${search.spelling.rebuild-ms:60000}")
+    public void rebuildIfStale() {
+        if (!enabled || generation.isWriting()) return;
+        long current = generation.current();
+        if (current == indexedGeneration) return;
+        long started = System.currentTimeMillis();
+        index = build();
+        indexedGeneration = current;
+        logger.info("Индекс исправления опечаток построен: {} лемм, {} ключей удалений за {} мс",
+                index.words.length, index.deletes.size(), System.currentTimeMillis() - started);
+    }
+
+    /**
+     * Исправленный запрос или пустой Optional, если все слова известны
+     * или для неизвестных не нашлось близкой леммы.
+     */
+    public Optional<String> correct(String query) {
+        DeletesIndex idx = index;
+        if (!enabled || idx == null || query == null || query.isBlank()) return Optional.empty();
+
+        Set<String> words = new HashSet<>();
+        BooleanQuery.parse(query).collectWords(words, words, false);
+
+        LemmaFinder lemmaFinder = LemmaFinder.getInstance();
+        Map<String, String> replacements = new HashMap<>();
+        for (String word : words) {
+            if (word.length() < minWordLength) continue;
+            // латиница, числа и служебные слова («через», «чтобы») лемм в индексе не имеют
+            // и не исправляются, иначе игнорируемое слово превратилось бы в обязательное
+            if (!lemmaFinder.isRussianWord(word) || lemmaFinder.isParticle(word)) continue;
+            Set<String> lemmas = lemmaFinder.collectLemmas(word).keySet();
+            if (lemmas.stream().anyMatch(idx::isKnown)) continue;
+
+            // исправляем и само слово, и его предполагаемую лемму:
+            // у ошибочной словоформы до леммы словаря часто дальше, чем 2 правки
+            Candidate best = null;
+            Set<String> inputs = new LinkedHashSet<>(lemmas);
+            inputs.add(word);
+            for (String input : inputs) {
+                Candidate c = idx.lookup(input);
+                if (c != null && (best == null || c.isBetterThan(best))) best = c;
+            }
+            if (best != null) replacements.put(word, best.word);
+        }
+        if (replacements.isEmpty()) return Optional.empty();
+
+        String corrected = query;
+        for (Map.Entry<String, String> e : replacements.entrySet()) {
+            Pattern p = Pattern.compile("(?<![\\p{L}\\d])" + Pattern.quote(e.getKey()) + "(?![\\p{L}\\d])",
+                    Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
+            corrected = p.matcher(corrected).replaceAll(Matcher.quoteReplacement(e.getValue()));
+        }
+        return Optional.of(corrected);
+    }
+
+    private DeletesIndex build() {
+        List<String> words = new ArrayList<>();
+        IntArrayList freqs = new IntArrayList();
+        termDictionary.forEach((id, lemma) -> {
+            int f = frequencies.total(id);
+            if (f >= minFrequency) {
+                words.add(lemma);
+                freqs.add(f);
+            }
+        });
+
+        Object2IntOpenHashMap<String> known = new Object2IntOpenHashMap<>(words.size());
+        known.defaultReturnValue(-1);
+        Int2ObjectOpenHashMap<IntArrayList> building = new Int2ObjectOpenHashMap<>();
+        Set<String> variants = new HashSet<>();
+        for (int i = 0; i < words.size(); i++) {
+            String word = words.get(i);
+            known.put(word, i);
+            variants.clear();
+            deletes(prefix(word), maxEditDistance, variants);
+            for (String v : variants) {
+                building.computeIfAbsent(v.hashCode(), k -> new IntArrayList(2)).add(i);
+            }
+        }
+
+        // ключ — хеш удаления: коллизии лишь добавляют кандидатов,
+        // которые затем отсеивает точная проверка расстояния
+        Int2ObjectOpenHashMap<int[]> deletes = new Int2ObjectOpenHashMap<>(building.size());
+        building.int2ObjectEntrySet().forEach(e -> deletes.put(e.getIntKey(), e.getValue().toIntArray()));
+        return new DeletesIndex(words.toArray(new String[0]), freqs.toIntArray(), known, deletes);
+    }
+
+    private String prefix(String word) {
+        return word.length() > prefixLength ? word.substring(0, prefixLength) : word;
+    }
+
+    private static void deletes(String word, int distance, Set<String> out) {
+        if (!out.add(word) || distance == 0 || word.length() <= 1) return;
+        for (int i = 0; i < word.length(); i++) {
+            deletes(word.substring(0, i) + word.substring(i + 1), distance - 1, out);
+        }
+    }
+
+    @RequiredArgsConstructor
+    private static class Candidate {
+        private final String word;
+        private final int distance;
+        private final int frequency;
+
+        boolean isBetterThan(Candidate other) {
+            if (distance != other.distance) return distance < other.distance;
+            return frequency > other.frequency;
+        }
+    }
+
+    @RequiredArgsConstructor
+    private class DeletesIndex {
+        private final String[] words;
+        private final int[] freqs;
+        private final Object2IntOpenHashMap<String> known;
+        private final Int2ObjectOpenHashMap<int[]> deletes;
+
+        boolean isKnown(String word) {
+            return known.getInt(word) >= 0;
+        }
+
+        Candidate lookup(String input) {
+            int known = this.known.getInt(input);
+            if (known >= 0) return new Candidate(input, 0, freqs[known]);
+
+            int maxDistance = input.length() <= minWordLength ? 1 : maxEditDistance;
+            Set<String> variants = new HashSet<>();
+            deletes(prefix(input), maxDistance, variants);
+
+            Candidate best = null;
+            Set<Integer> seen = new HashSet<>();
+            for (String v : variants) {
+                int[] ids = deletes.get(v.hashCode());
+                if (ids == null) continue;
+                for (int id : ids) {
+                    if (!seen.add(id)) continue;
+                    String word = words[id];
+                    if (Math.abs(word.length() - input.length()) > maxDistance) continue;
+                    int d = distance(input, word, maxDistance);
+                    if (d > maxDistance) continue;
+                    Candidate c = new Candidate(word, d, freqs[id]);
+                    if (best == null || c.isBetterThan(best)) best = c;
+                }
+            }
+            return best;
+        }
+    }
+
+    /** Расстояние Дамерау–Левенштейна (с транспозициями соседних символов), обрезанное по max + 1. */
+    static int distance(String a, String b, int max) {
+        int n = a.length();
+        int m = b.length();
+        int[] prev2 = new int[m + 1];
+        int[] prev = new int[m + 1];
+        int[] cur = new int[m + 1];
+        for (int j = 0; j <= m; j++) prev[j] = j;
+        for (int i = 1; i <= n; i++) {
+            cur[0] = i;
+            int rowMin = cur[0];
+            for (int j = 1; j <= m; j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                int v = Math.min(Math.min(prev[j] + 1, cur[j - 1] + 1), prev[j - 1] + cost);
+                if (i > 1 && j > 1 && a.charAt(i - 1) == b.charAt(j - 2) && a.charAt(i - 2) == b.charAt(j - 1)) {
+                    v = Math.min(v, prev2[j - 2] + 1);
+                }
+                cur[j] = v;
+                rowMin = Math.min(rowMin, v);
+            }
+            if (rowMin > max) return max + 1;
+            int[] t = prev2;
+            prev2 = prev;
+            prev = cur;
+            cur = t;
+        }
+        return Math.min(prev[m], max + 1);
+    }
+}
@@ -2,6 +2,7 @@ package searchengine.services;
 
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import searchengine.config.Site;
 import searchengine.config.SitesList;
 import searchengine.dto.statistics.DetailedStatisticsItem;
@@ -27,6 +28,7 @@ public class StatisticsServiceImpl implements StatisticsService {
     private final LemmaRepository lemmaRepository;
 
     @Override
+    @Transactional(readOnly = true)
     public StatisticsResponse getStatistics() {
         TotalStatistics total = new TotalStatistics();
         total.setSites(sites.getSites().size());
@@ -41,8 +43,8 @@ public class StatisticsServiceImpl implements StatisticsService {
                 item.setStatus(se.getStatus() == null ? SiteStatus.FAILED.name() : se.getStatus().name());
                 item.setStatusTime(se.getStatusTime() == null ? System.currentTimeMillis() : se.getStatusTime().atZone(java.time.ZoneId.systemDefault()).toInstant().toEpochMilli());
                 item.setError(se.getLastError());
-                int pages = pageRepository.findBySite(se).size();
-                int lemmas = lemmaRepository.findBySite(se).size();
+                int pages = (int) pageRepository.countBySite(se);
+                int lemmas = (int) lemmaRepository.countBySite(se);
                 item.setPages(pages);
                 item.setLemmas(lemmas);
                 total.setPages(total.getPages() + pages);
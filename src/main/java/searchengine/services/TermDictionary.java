@@ -0,0 +1,168 @@
+package searchengine.services;
+
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Object2LongOpenHashMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import searchengine.model.TermEntity;
+import searchengine.repositories.TermRepository;
+
+import java.util.function.BiConsumer;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Общий для всех сайтов словарь лемм: строка леммы ↔ целочисленный id.
+ * Целиком держится в памяти в примитивных картах; промахи дочитываются из БД,
+ * так как термины могут добавлять другие узлы. Отсутствие термина в БД тоже
+ * запоминается на NEGATIVE_TTL_MS: неизвестные слова запросов не должны
+ * каждый раз стоить обращения к БД.
+ */
+@Service
+public class TermDictionary {
+
+    public static final int UNKNOWN = -1;
+    private static final long NEGATIVE_TTL_MS = 60_000;
+    private static final int NEGATIVE_CAPACITY = 100_000;
+    private static final Logger logger = LoggerFactory.getLogger(TermDictionary.class);
+
+    private final TermRepository termRepository;
+    private final TransactionTemplate newTransaction;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Object2IntOpenHashMap<String> ids = new Object2IntOpenHashMap<>();
+    private final Int2ObjectOpenHashMap<String> lemmas = new Int2ObjectOpenHashMap<>();
+    /** Лемма → момент, когда её не оказалось в БД. */
+    private final Object2LongOpenHashMap<String> missing = new Object2LongOpenHashMap<>();
+
+    public TermDictionary(TermRepository termRepository, PlatformTransactionManager transactionManager) {
+        this.termRepository = termRepository;
+        // термин вставляется в отдельной транзакции: конфликт уникальности
+        // не должен откатывать транзакцию индексации страницы
+        this.newTransaction = new TransactionTemplate(transactionManager);
+        this.newTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        ids.defaultReturnValue(UNKNOWN);
+    }
+
+    public void loadFromDatabase() {
+        long started = System.currentTimeMillis();
+        clear();
+        termRepository.findAll().forEach(t -> put(t.getId(), t.getLemma()));
+        logger.info("Словарь лемм загружен из БД: {} терминов за {} мс", size(), System.currentTimeMillis() - started);
+    }
+
+    public void register(int id, String lemma) {
+        put(id, lemma);
+    }
+
+    /** id леммы или {@link #UNKNOWN}, если её нет ни в памяти, ни в БД. */
+    public int idOf(String lemma) {
+        int id = cached(lemma);
+        if (id != UNKNOWN || knownMissing(lemma)) return id;
+        id = termRepository.findByLemma(lemma).map(t -> put(t.getId(), t.getLemma())).orElse(UNKNOWN);
+        if (id == UNKNOWN) markMissing(lemma);
+        return id;
+    }
+
+    public int getOrCreate(String lemma) {
+        int id = idOf(lemma);
+        if (id != UNKNOWN) return id;
+        try {
+            TermEntity term = newTransaction.execute(status -> {
+                TermEntity t = new TermEntity();
+                t.setLemma(lemma);
+                return termRepository.save(t);
+            });
+            return put(term.getId(), term.getLemma());
+        } catch (DataIntegrityViolationException e) {
+            // термин параллельно добавил другой поток или узел
+            return termRepository.findByLemma(lemma).map(t -> put(t.getId(), t.getLemma()))
+                    .orElseThrow(() -> e);
+        }
+    }
+
+    public String lemmaOf(int id) {
+        lock.readLock().lock();
+        try {
+            return lemmas.get(id);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            ids.clear();
+            lemmas.clear();
+            missing.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Обход всех терминов под блокировкой чтения. */
+    public void forEach(BiConsumer<Integer, String> consumer) {
+        lock.readLock().lock();
+        try {
+            lemmas.int2ObjectEntrySet().forEach(e -> consumer.accept(e.getIntKey(), e.getValue()));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return ids.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private int cached(String lemma) {
+        lock.readLock().lock();
+        try {
+            return ids.getInt(lemma);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private boolean knownMissing(String lemma) {
+        lock.readLock().lock();
+        try {
+            return missing.containsKey(lemma)
+                    && System.currentTimeMillis() - missing.getLong(lemma) < NEGATIVE_TTL_MS;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void markMissing(String lemma) {
+        lock.writeLock().lock();
+        try {
+            if (missing.size() >= NEGATIVE_CAPACITY) missing.clear();
+            missing.put(lemma, System.currentTimeMillis());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private int put(int id, String lemma) {
+        lock.writeLock().lock();
+        try {
+            ids.put(lemma, id);
+            lemmas.put(id, lemma);
+            missing.removeLong(lemma);
+            return id;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+}
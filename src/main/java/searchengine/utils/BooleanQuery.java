@@ -0,0 +1,269 @@
+package searchengine.utils;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.roaringbitmap.RoaringBitmap;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Разбор поискового запроса с булевыми операторами.
+ * Слова через пробел — AND; OR, ИЛИ или | — OR; NOT, НЕ или минус перед словом — отрицание;
+ * скобки группируют. Операторы распознаются только в верхнем регистре (и «|», «-»),
+ * поэтому обычный текст запроса работает как прежде — неявное AND.
+ * Приоритет: NOT, затем AND, затем OR.
+ * Вычисление идёт над сжатыми битовыми картами id страниц (RoaringBitmap).
+ */
+public final class BooleanQuery {
+
+    private BooleanQuery() {
+    }
+
+    public interface Node {
+        /** Раскладывает слова запроса на положительные и отрицаемые. */
+        void collectWords(Set<String> positive, Set<String> negative, boolean negated);
+    }
+
+    @Getter
+    @RequiredArgsConstructor
+    public static class Term implements Node {
+        private final String word;
+
+        @Override
+        public void collectWords(Set<String> positive, Set<String> negative, boolean negated) {
+            (negated ? negative : positive).add(word);
+        }
+    }
+
+    @Getter
+    @RequiredArgsConstructor
+    public static class Not implements Node {
+        private final Node child;
+
+        @Override
+        public void collectWords(Set<String> positive, Set<String> negative, boolean negated) {
+            child.collectWords(positive, negative, !negated);
+        }
+    }
+
+    @Getter
+    @RequiredArgsConstructor
+    public static class And implements Node {
+        private final List<Node> children;
+
+        @Override
+        public void collectWords(Set<String> positive, Set<String> negative, boolean negated) {
+            children.forEach(c -> c.collectWords(positive, negative, negated));
+        }
+    }
+
+    @Getter
+    @RequiredArgsConstructor
+    public static class Or implements Node {
+        private final List<Node> children;
+
+        @Override
+        public void collectWords(Set<String> positive, Set<String> negative, boolean negated) {
+            children.forEach(c -> c.collectWords(positive, negative, negated));
+        }
+    }
+
+    /** Разобранный запрос вместе с леммами каждого слова. */
+    @Getter
+    @RequiredArgsConstructor
+    public static class Parsed {
+        private final Node root;
+        private final Map<String, Set<String>> lemmasByWord;
+        private final Set<String> positive;
+        private final Set<String> negative;
+
+        public Set<String> allLemmas() {
+            Set<String> all = new HashSet<>(positive);
+            all.addAll(negative);
+            return all;
+        }
+    }
+
+    public static Parsed analyze(String query) {
+        Node root = parse(query);
+        Set<String> positiveWords = new HashSet<>();
+        Set<String> negativeWords = new HashSet<>();
+        root.collectWords(positiveWords, negativeWords, false);
+
+        Map<String, Set<String>> lemmasByWord = new HashMap<>();
+        Set<String> positive = new HashSet<>();
+        Set<String> negative = new HashSet<>();
+        for (String word : positiveWords) {
+            positive.addAll(lemmasByWord.computeIfAbsent(word, BooleanQuery::lemmasOf));
+        }
+        for (String word : negativeWords) {
+            negative.addAll(lemmasByWord.computeIfAbsent(word, BooleanQuery::lemmasOf));
+        }
+        if (positive.isEmpty() && !negative.isEmpty()) {
+            throw new IllegalArgumentException("Запрос должен содержать хотя бы одно слово без отрицания");
+        }
+        return new Parsed(root, lemmasByWord, positive, negative);
+    }
+
+    private static Set<String> lemmasOf(String word) {
+        return LemmaFinder.getInstance().collectLemmas(word).keySet();
+    }
+
+    /**
+     * Вычисляет запрос над картами страниц. postings возвращает карту слова
+     * или null, если слово не участвует в поиске (стоп-слово или слишком частая лемма) —
+     * такое слово просто выпадает из выражения. universe нужен, только если результат
+     * остался отрицанием (например, «а OR -б»), и даёт маску всех страниц сайта.
+     */
+    public static RoaringBitmap evaluate(Node root, Function<Term, RoaringBitmap> postings,
+                                         Supplier<RoaringBitmap> universe) {
+        Match m = eval(root, postings);
+        if (m == null) return new RoaringBitmap();
+        return m.negated ? RoaringBitmap.andNot(universe.get(), m.bits) : m.bits;
+    }
+
+    /** Множество страниц: bits или, если negated, все страницы, кроме bits. */
+    @RequiredArgsConstructor
+    private static class Match {
+        private final RoaringBitmap bits;
+        private final boolean negated;
+    }
+
+    private static Match eval(Node node, Function<Term, RoaringBitmap> postings) {
+        if (node instanceof Term term) {
+            RoaringBitmap bits = postings.apply(term);
+            return bits == null ? null : new Match(bits, false);
+        }
+        if (node instanceof Not not) {
+            Match m = eval(not.getChild(), postings);
+            return m == null ? null : new Match(m.bits, !m.negated);
+        }
+        boolean and = node instanceof And;
+        List<Node> children = and ? ((And) node).getChildren() : ((Or) node).getChildren();
+        Match acc = null;
+        for (Node child : children) {
+            Match m = eval(child, postings);
+            if (m == null) continue;
+            acc = acc == null ? m : and ? and(acc, m) : or(acc, m);
+        }
+        return acc;
+    }
+
+    private static Match and(Match a, Match b) {
+        if (!a.negated && !b.negated) return new Match(RoaringBitmap.and(a.bits, b.bits), false);
+        if (!a.negated) return new Match(RoaringBitmap.andNot(a.bits, b.bits), false);
+        if (!b.negated) return new Match(RoaringBitmap.andNot(b.bits, a.bits), false);
+        return new Match(RoaringBitmap.or(a.bits, b.bits), true);
+    }
+
+    private static Match or(Match a, Match b) {
+        if (!a.negated && !b.negated) return new Match(RoaringBitmap.or(a.bits, b.bits), false);
+        if (!a.negated) return new Match(RoaringBitmap.andNot(b.bits, a.bits), true);
+        if (!b.negated) return new Match(RoaringBitmap.andNot(a.bits, b.bits), true);
+        return new Match(RoaringBitmap.and(a.bits, b.bits), true);
+    }
+
+    public static Node parse(String query) {
+        Parser parser = new Parser(tokenize(query));
+        Node node = parser.parseOr();
+        if (parser.pos < parser.tokens.size()) {
+            throw new IllegalArgumentException("Ошибка в запросе рядом с «" + parser.tokens.get(parser.pos) + "»");
+        }
+        if (node == null) {
+            throw new IllegalArgumentException("Задан пустой поисковый запрос");
+        }
+        return node;
+    }
+
+    private static List<String> tokenize(String query) {
+        List<String> tokens = new ArrayList<>();
+        StringBuilder word = new StringBuilder();
+        for (int i = 0; i < query.length(); i++) {
+            char c = query.charAt(i);
+            if (Character.isWhitespace(c) || c == '(' || c == ')' || c == '|') {
+                if (word.length() > 0) {
+                    tokens.add(word.toString());
+                    word.setLength(0);
+                }
+                if (!Character.isWhitespace(c)) tokens.add(String.valueOf(c));
+            } else if (c == '-' && word.length() == 0) {
+                tokens.add("-");
+            } else {
+                word.append(c);
+            }
+        }
+        if (word.length() > 0) tokens.add(word.toString());
+        return tokens;
+    }
+
+    private static class Parser {
+        private final List<String> tokens;
+        private int pos;
+
+        Parser(List<String> tokens) {
+            this.tokens = tokens;
+        }
+
+        Node parseOr() {
+            List<Node> parts = new ArrayList<>();
+            Node first = parseAnd();
+            if (first != null) parts.add(first);
+            while (isOr(peek())) {
+                pos++;
+                Node next = parseAnd();
+                if (next != null) parts.add(next);
+            }
+            if (parts.isEmpty()) return null;
+            return parts.size() == 1 ? parts.get(0) : new Or(parts);
+        }
+
+        Node parseAnd() {
+            List<Node> parts = new ArrayList<>();
+            while (true) {
+                String t = peek();
+                if (t == null || t.equals(")") || isOr(t)) break;
+                if (t.equals("AND") || t.equals("И")) {
+                    pos++;
+                    continue;
+                }
+                Node unary = parseUnary();
+                if (unary != null) parts.add(unary);
+            }
+            if (parts.isEmpty()) return null;
+            return parts.size() == 1 ? parts.get(0) : new And(parts);
+        }
+
+        Node parseUnary() {
+            String t = peek();
+            if (t.equals("-") || t.equals("NOT") || t.equals("НЕ")) {
+                pos++;
+                // отрицание без операнда («-)», «NOT OR б», «а -») отбрасывается
+                if (!startsOperand(peek())) return null;
+                Node child = parseUnary();
+                return child == null ? null : new Not(child);
+            }
+            if (t.equals("(")) {
+                pos++;
+                Node inner = parseOr();
+                if (")".equals(peek())) pos++;
+                return inner;
+            }
+            pos++;
+            return new Term(t.toLowerCase(Locale.ROOT));
+        }
+
+        private String peek() {
+            return pos < tokens.size() ? tokens.get(pos) : null;
+        }
+
+        private boolean startsOperand(String t) {
+            return t != null && !t.equals(")") && !isOr(t) && !t.equals("AND") && !t.equals("И");
+        }
+
+        private boolean isOr(String t) {
+            return t != null && (t.equals("OR") || t.equals("ИЛИ") || t.equals("|"));
+        }
+    }
+}
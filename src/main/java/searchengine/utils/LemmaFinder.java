@@ -1,36 +1,47 @@
 package searchengine.utils;
 
-import org.apache.lucene.morphology.LuceneMorphology;
-import org.apache.lucene.morphology.russian.RussianLuceneMorphology;
-
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
 import java.util.*;
 
 public class LemmaFinder {
 
-    private final LuceneMorphology luceneMorphology;
+    private final MorphologyDictionary morphology;
 
     private static final String VALID_RUSSIAN_WORD = "^[а-яё-]+$";
     private static final String[] particlesNames = new String[]{"МЕЖД", "ПРЕДЛ", "СОЮЗ"};
 
 
-    private static class Holder {
-        static final LemmaFinder INSTANCE;
-        static {
-            try {
-                INSTANCE = new LemmaFinder(new RussianLuceneMorphology());
-            } catch (IOException e) {
-                throw new ExceptionInInitializerError(e);
-            }
-        }
+    private static volatile LemmaFinder instance;
+    private static volatile Path dictionaryPath = Path.of("data", "morphology.dict");
+
+    /** Файл отображаемого словаря; действует до первой загрузки. */
+    public static void setDictionaryPath(Path path) {
+        dictionaryPath = path;
     }
 
+    /**
+     * Общий экземпляр; словарь загружается один раз, остальные вызовы ждут его.
+     * Неудачная загрузка не запоминается — следующий вызов пробует снова.
+     */
     public static LemmaFinder getInstance() {
-        return Holder.INSTANCE;
+        LemmaFinder finder = instance;
+        if (finder != null) return finder;
+        synchronized (LemmaFinder.class) {
+            if (instance == null) {
+                try {
+                    instance = new LemmaFinder(MappedMorphology.open(dictionaryPath));
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Не удалось загрузить словарь морфологии", e);
+                }
+            }
+            return instance;
+        }
     }
 
-    private LemmaFinder(LuceneMorphology luceneMorphology) {
-        this.luceneMorphology = luceneMorphology;
+    private LemmaFinder(MorphologyDictionary morphology) {
+        this.morphology = morphology;
     }
 
     public Map<String, Integer> collectLemmas(String text) {
@@ -42,10 +53,10 @@ public class LemmaFinder {
                 continue;
             }
 
-            List<String> morphInfo = luceneMorphology.getMorphInfo(word);
+            List<String> morphInfo = morphology.getMorphInfo(word);
             if (anyWordBaseBelongToParticle(morphInfo)) continue;
 
-            List<String> normalForms = luceneMorphology.getNormalForms(word);
+            List<String> normalForms = morphology.getNormalForms(word);
             if (normalForms.isEmpty()) continue;
 
             String normalWord = normalForms.get(0);
@@ -59,14 +70,24 @@ public class LemmaFinder {
         Set<String> lemmaSet = new HashSet<>();
         for (String word : textArray) {
             if (!word.isEmpty() && isCorrectWordForm(word)) {
-                List<String> wordBaseForms = luceneMorphology.getMorphInfo(word);
+                List<String> wordBaseForms = morphology.getMorphInfo(word);
                 if (anyWordBaseBelongToParticle(wordBaseForms)) continue;
-                lemmaSet.addAll(luceneMorphology.getNormalForms(word));
+                lemmaSet.addAll(morphology.getNormalForms(word));
             }
         }
         return lemmaSet;
     }
 
+    /** Слово целиком из кириллицы (допускается дефис), в нижнем регистре. */
+    public boolean isRussianWord(String word) {
+        return isCorrectWordForm(word);
+    }
+
+    /** Предлог, союз или междометие: такие слова не индексируются и в поиске не участвуют. */
+    public boolean isParticle(String word) {
+        return isCorrectWordForm(word) && anyWordBaseBelongToParticle(morphology.getMorphInfo(word));
+    }
+
     private boolean anyWordBaseBelongToParticle(List<String> wordBaseForms) {
         return wordBaseForms.stream().anyMatch(this::hasParticleProperty);
     }
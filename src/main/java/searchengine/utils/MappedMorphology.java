@@ -0,0 +1,197 @@
+package searchengine.utils;
+
+import org.apache.lucene.morphology.russian.RussianLetterDecoderEncoder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Словарь морфологии в файле, отображённом в память. Таблицы lucene-morphology
+ * лежат в файле плоскими массивами, и поиск правила идёт по ним тем же двоичным
+ * поиском по перевёрнутому слову, что и в MorphologyImpl, поэтому результат
+ * совпадает с RussianLuceneMorphology. В куче остаются только найденные формы,
+ * а сам словарь занимает страничный кеш и разделяется между процессами.
+ *
+ * Файл строится один раз из артефактов morph/russian и перестраивается, если
+ * сменилась их версия, формат или не сошлась контрольная сумма.
+ *
+ * Формат: MAGIC, VERSION, source, separatorCount, separatorStart[n + 1],
+ * separatorInts[], ruleId[n], ruleCount, ruleStart[r + 1],
+ * (suffixLength, suffixString, formInfoString)*, stringCount,
+ * stringStart[s + 1], chars[], crc32.
+ */
+public final class MappedMorphology implements MorphologyDictionary {
+
+    static final int MAGIC = 0x53454D44; // "SEMD"
+    static final int VERSION = 1;
+
+    private static final Logger logger = LoggerFactory.getLogger(MappedMorphology.class);
+
+    private final ByteBuffer buf;
+    private final RussianLetterDecoderEncoder encoder = new RussianLetterDecoderEncoder();
+    private final int separatorCount;
+    private final int separatorStart;
+    private final int separatorInts;
+    private final int ruleIds;
+    private final int ruleStart;
+    private final int heuristics;
+    private final int stringStart;
+    private final int chars;
+
+    private MappedMorphology(ByteBuffer buf, int headerEnd) {
+        this.buf = buf;
+        int p = headerEnd;
+        separatorCount = buf.getInt(p);
+        separatorStart = p + 4;
+        separatorInts = separatorStart + 4 * (separatorCount + 1);
+        ruleIds = separatorInts + 4 * buf.getInt(separatorStart + 4 * separatorCount);
+        p = ruleIds + 4 * separatorCount;
+        int ruleCount = buf.getInt(p);
+        ruleStart = p + 4;
+        heuristics = ruleStart + 4 * (ruleCount + 1);
+        p = heuristics + 12 * buf.getInt(ruleStart + 4 * ruleCount);
+        int stringCount = buf.getInt(p);
+        stringStart = p + 4;
+        chars = stringStart + 4 * (stringCount + 1);
+    }
+
+    /**
+     * Отображённый словарь из file; если файла нет или он устарел, словарь
+     * загружается из lucene-morphology и выгружается в file. Если записать файл
+     * не удалось, возвращается загруженный словарь — в куче, как раньше.
+     */
+    public static MorphologyDictionary open(Path file) throws IOException {
+        MappedMorphology mapped = map(file);
+        if (mapped != null) return mapped;
+
+        long started = System.currentTimeMillis();
+        MorphologyDictionaryWriter dictionary = new MorphologyDictionaryWriter();
+        try {
+            dictionary.write(file);
+        } catch (IOException e) {
+            logger.warn("Не удалось записать словарь морфологии {}, словарь остаётся в куче: {}", file, e.toString());
+            return dictionary;
+        }
+        logger.info("Словарь морфологии выгружен в {} за {} мс", file, System.currentTimeMillis() - started);
+        mapped = map(file);
+        return mapped != null ? mapped : dictionary;
+    }
+
+    static MappedMorphology map(Path file) {
+        if (!Files.isRegularFile(file)) return null;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < 32 || size > Integer.MAX_VALUE) return null;
+            MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+
+            // заодно читает весь файл в страничный кеш
+            CRC32 crc = new CRC32();
+            crc.update(buf.slice(0, (int) size - 8));
+            if (crc.getValue() != buf.getLong((int) size - 8)) {
+                logger.warn("Словарь морфологии {} повреждён: контрольная сумма не совпадает", file);
+                return null;
+            }
+            if (buf.getInt(0) != MAGIC || buf.getInt(4) != VERSION) {
+                logger.warn("Словарь морфологии {} имеет неизвестный формат", file);
+                return null;
+            }
+            byte[] source = new byte[buf.getShort(8) & 0xffff];
+            buf.get(10, source);
+            if (!new String(source, StandardCharsets.UTF_8).equals(MorphologyDictionaryWriter.source())) {
+                logger.info("Словарь морфологии {} построен из другой версии lucene-morphology", file);
+                return null;
+            }
+            return new MappedMorphology(buf, 10 + source.length);
+        } catch (IOException e) {
+            logger.warn("Не удалось отобразить словарь морфологии {}: {}", file, e.toString());
+            return null;
+        }
+    }
+
+    @Override
+    public List<String> getNormalForms(String word) {
+        int rule = rule(word);
+        List<String> result = new ArrayList<>();
+        boolean seenEmpty = false;
+        for (int h = ruleFrom(rule); h < ruleFrom(rule + 1); h++) {
+            String form = transform(word, h);
+            if (!form.isEmpty()) {
+                result.add(form);
+            } else if (!seenEmpty) {
+                // пустая нормальная форма — слово неизменяемое
+                result.add(word);
+                seenEmpty = true;
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public List<String> getMorphInfo(String word) {
+        int rule = rule(word);
+        List<String> result = new ArrayList<>();
+        for (int h = ruleFrom(rule); h < ruleFrom(rule + 1); h++) {
+            result.add(transform(word, h) + "|" + string(buf.getInt(heuristics + 12 * h + 8)));
+        }
+        return result;
+    }
+
+    /** Правило последнего разделителя, не большего перевёрнутого слова. */
+    private int rule(String word) {
+        int[] key = encoder.encodeToArray(new StringBuilder(word).reverse().toString());
+        int low = 0;
+        int high = separatorCount - 1;
+        int found = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (compare(key, mid) >= 0) {
+                found = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return buf.getInt(ruleIds + 4 * Math.max(found, 0));
+    }
+
+    private int compare(int[] key, int separator) {
+        int from = buf.getInt(separatorStart + 4 * separator);
+        int length = buf.getInt(separatorStart + 4 * separator + 4) - from;
+        int n = Math.min(key.length, length);
+        for (int i = 0; i < n; i++) {
+            int c = Integer.compare(key[i], buf.getInt(separatorInts + 4 * (from + i)));
+            if (c != 0) return c;
+        }
+        return key.length - length;
+    }
+
+    private int ruleFrom(int rule) {
+        return buf.getInt(ruleStart + 4 * rule);
+    }
+
+    private String transform(String word, int heuristic) {
+        int suffixLength = buf.getInt(heuristics + 12 * heuristic);
+        if (word.length() < suffixLength) return word;
+        return word.substring(0, word.length() - suffixLength) + string(buf.getInt(heuristics + 12 * heuristic + 4));
+    }
+
+    private String string(int id) {
+        int from = buf.getInt(stringStart + 4 * id);
+        char[] value = new char[buf.getInt(stringStart + 4 * id + 4) - from];
+        for (int i = 0; i < value.length; i++) {
+            value[i] = buf.getChar(chars + 2 * (from + i));
+        }
+        return new String(value);
+    }
+}
@@ -0,0 +1,12 @@
+package searchengine.utils;
+
+import java.util.List;
+
+/** Словарь морфологии в объёме, нужном {@link LemmaFinder}. */
+public interface MorphologyDictionary {
+
+    List<String> getNormalForms(String word);
+
+    /** Формы слова с грамматической информацией: «форма|граммемы». */
+    List<String> getMorphInfo(String word);
+}
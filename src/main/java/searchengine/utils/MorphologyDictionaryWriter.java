@@ -0,0 +1,115 @@
+package searchengine.utils;
+
+import org.apache.lucene.morphology.Heuristic;
+import org.apache.lucene.morphology.russian.RussianLuceneMorphology;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.CodeSource;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Словарь lucene-morphology, загруженный обычным способом, и его выгрузка
+ * в файл {@link MappedMorphology}. Таблицы словаря — разделители, номера правил,
+ * правила и грамматическая информация — защищённые поля MorphologyImpl,
+ * поэтому класс наследует RussianLuceneMorphology и читает их напрямую.
+ * Пока файл не записан, сам служит словарём.
+ */
+class MorphologyDictionaryWriter extends RussianLuceneMorphology implements MorphologyDictionary {
+
+    MorphologyDictionaryWriter() throws IOException {
+        super();
+    }
+
+    /** Версия исходного словаря: имя и размер артефакта с RussianLuceneMorphology. */
+    static String source() {
+        CodeSource code = RussianLuceneMorphology.class.getProtectionDomain().getCodeSource();
+        if (code == null) return "";
+        try {
+            File file = new File(code.getLocation().toURI());
+            return file.getName() + ":" + file.length();
+        } catch (Exception e) {
+            return code.getLocation().toString();
+        }
+    }
+
+    void write(Path target) throws IOException {
+        target = target.toAbsolutePath();
+        Files.createDirectories(target.getParent());
+        Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+
+        // строки: сначала грамматическая информация (номер строки = номер в grammarInfo), затем окончания
+        Map<String, Integer> strings = new HashMap<>();
+        StringBuilder chars = new StringBuilder();
+        int[] stringStart = new int[grammarInfo.length + heuristicCount() + 1];
+        int stringCount = 0;
+        for (String info : grammarInfo) {
+            stringStart[stringCount++] = chars.length();
+            chars.append(info);
+        }
+
+        CRC32 crc = new CRC32();
+        try (FileOutputStream file = new FileOutputStream(tmp.toFile())) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    new CheckedOutputStream(file, crc), 64 * 1024));
+            out.writeInt(MappedMorphology.MAGIC);
+            out.writeInt(MappedMorphology.VERSION);
+            out.writeUTF(source());
+
+            out.writeInt(separators.length);
+            int offset = 0;
+            for (int[] separator : separators) {
+                out.writeInt(offset);
+                offset += separator.length;
+            }
+            out.writeInt(offset);
+            for (int[] separator : separators) {
+                for (int v : separator) out.writeInt(v);
+            }
+            for (short ruleId : rulesId) out.writeInt(ruleId);
+
+            out.writeInt(rules.length);
+            offset = 0;
+            for (Heuristic[] rule : rules) {
+                out.writeInt(offset);
+                offset += rule.length;
+            }
+            out.writeInt(offset);
+            for (Heuristic[] rule : rules) {
+                for (Heuristic h : rule) {
+                    String suffix = h.getActualNormalSuffix();
+                    Integer id = strings.get(suffix);
+                    if (id == null) {
+                        id = stringCount;
+                        strings.put(suffix, id);
+                        stringStart[stringCount++] = chars.length();
+                        chars.append(suffix);
+                    }
+                    out.writeInt(h.getActualSuffixLength());
+                    out.writeInt(id);
+                    out.writeInt(h.getFormMorphInfo());
+                }
+            }
+
+            stringStart[stringCount] = chars.length();
+            out.writeInt(stringCount);
+            for (int i = 0; i <= stringCount; i++) out.writeInt(stringStart[i]);
+            out.writeChars(chars.toString());
+            out.flush();
+
+            new DataOutputStream(file).writeLong(crc.getValue());
+        }
+        Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private int heuristicCount() {
+        int n = 0;
+        for (Heuristic[] rule : rules) n += rule.length;
+        return n;
+    }
+}
@@ -0,0 +1,82 @@
+package searchengine.utils;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Профиль выполнения текущего поискового запроса (на поток): время по фазам,
+ * число SQL-запросов и размеры списков страниц по леммам. Фазы с одинаковым
+ * именем суммируются, например по всем сайтам. Без {@link #start()} все вызовы пустые.
+ */
+public final class QueryProfile {
+
+    private static final ThreadLocal<QueryProfile> CURRENT = new ThreadLocal<>();
+    private static final Phase NOOP = () -> { };
+
+    private final long startedAt = System.nanoTime();
+    private final Map<String, Long> phases = new LinkedHashMap<>();
+    private final Map<String, Integer> postings = new LinkedHashMap<>();
+    private final Map<String, Long> counters = new LinkedHashMap<>();
+    private int sqlStatements;
+    private long finishedAt;
+
+    private QueryProfile() {
+    }
+
+    public static void start() {
+        CURRENT.set(new QueryProfile());
+    }
+
+    /** Завершает профиль текущего потока и возвращает его; null, если профиль не начинали. */
+    public static QueryProfile finish() {
+        QueryProfile profile = CURRENT.get();
+        CURRENT.remove();
+        if (profile != null) profile.finishedAt = System.nanoTime();
+        return profile;
+    }
+
+    /** Замер фазы: try (var p = QueryProfile.phase("postings")) { ... } */
+    public static Phase phase(String name) {
+        QueryProfile profile = CURRENT.get();
+        if (profile == null) return NOOP;
+        long started = System.nanoTime();
+        return () -> profile.phases.merge(name, System.nanoTime() - started, Long::sum);
+    }
+
+    public static void onSqlStatement() {
+        QueryProfile profile = CURRENT.get();
+        if (profile != null) profile.sqlStatements++;
+    }
+
+    public static void posting(String lemma, int size) {
+        QueryProfile profile = CURRENT.get();
+        if (profile != null) profile.postings.merge(lemma, size, Integer::sum);
+    }
+
+    public static void count(String name, long delta) {
+        QueryProfile profile = CURRENT.get();
+        if (profile != null) profile.counters.merge(name, delta, Long::sum);
+    }
+
+    public long totalMs() {
+        return ((finishedAt == 0 ? System.nanoTime() : finishedAt) - startedAt) / 1_000_000;
+    }
+
+    public Map<String, Object> toMap() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("totalMs", totalMs());
+        Map<String, Double> phaseMs = new LinkedHashMap<>();
+        phases.forEach((name, nanos) -> phaseMs.put(name, Math.round(nanos / 10_000.0) / 100.0));
+        m.put("phasesMs", phaseMs);
+        m.put("sqlStatements", sqlStatements);
+        m.put("postings", postings);
+        m.put("counters", counters);
+        return m;
+    }
+
+    @FunctionalInterface
+    public interface Phase extends AutoCloseable {
+        @Override
+        void close();
+    }
+}
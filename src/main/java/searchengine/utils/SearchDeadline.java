@@ -0,0 +1,35 @@
+package searchengine.utils;
+
+/**
+ * Крайний срок выполнения текущего поискового запроса (на поток).
+ * Поиск вызывает {@link #check()} между дорогими шагами, а остаток срока
+ * передаёт в таймаут запросов к БД.
+ */
+public final class SearchDeadline {
+
+    private static final ThreadLocal<Long> DEADLINE = new ThreadLocal<>();
+
+    private SearchDeadline() {
+    }
+
+    public static void start(long timeoutMs) {
+        DEADLINE.set(System.currentTimeMillis() + timeoutMs);
+    }
+
+    public static void clear() {
+        DEADLINE.remove();
+    }
+
+    public static void check() {
+        Long deadline = DEADLINE.get();
+        if (deadline != null && System.currentTimeMillis() > deadline) {
+            throw new SearchTimeoutException();
+        }
+    }
+
+    /** Оставшееся время в мс; Long.MAX_VALUE, если срок не задан. */
+    public static long remainingMs() {
+        Long deadline = DEADLINE.get();
+        return deadline == null ? Long.MAX_VALUE : deadline - System.currentTimeMillis();
+    }
+}
@@ -0,0 +1,10 @@
+package searchengine.utils;
+
+public class SearchTimeoutException extends RuntimeException {
+
+    public static final String MESSAGE = "Превышено время выполнения поискового запроса";
+
+    public SearchTimeoutException() {
+        super(MESSAGE);
+    }
+}
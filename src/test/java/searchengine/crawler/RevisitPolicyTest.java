@@ -0,0 +1,87 @@
+package searchengine.crawler;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import searchengine.model.PageEntity;
+
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class RevisitPolicyTest {
+
+    private static final LocalDateTime NOW = LocalDateTime.of(2024, 1, 1, 12, 0);
+
+    private final RevisitPolicy policy = new RevisitPolicy();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(policy, "minIntervalMinutes", 5L);
+        ReflectionTestUtils.setField(policy, "initialIntervalHours", 24L);
+        ReflectionTestUtils.setField(policy, "maxIntervalHours", 168L);
+        ReflectionTestUtils.setField(policy, "smoothing", 0.5);
+    }
+
+    @Test
+    void firstVisitUsesInitialInterval() {
+        PageEntity page = page(0, 0);
+        policy.visited(page, 42L, NOW);
+
+        assertThat(page.getChangeRate()).isNull();
+        assertThat(page.getContentHash()).isEqualTo(42L);
+        assertThat(page.getLastVisit()).isEqualTo(NOW);
+        assertThat(page.getNextVisit()).isEqualTo(NOW.plusHours(24));
+    }
+
+    @Test
+    void changedPageIsRevisitedSooner() {
+        PageEntity page = page(0, 0);
+        policy.visited(page, 1L, NOW.minusDays(1));
+        policy.visited(page, 2L, NOW);
+
+        assertThat(page.getChangeRate()).isCloseTo(1.0, within(1e-9));
+        assertThat(page.getNextVisit()).isEqualTo(NOW.plusDays(1));
+
+        policy.visited(page, 3L, NOW.plusHours(6));
+        // 4 изменения в сутки наблюдаемо, сглаживание 0.5 -> 2.5
+        assertThat(page.getChangeRate()).isCloseTo(2.5, within(1e-9));
+    }
+
+    @Test
+    void unchangedPageDecaysTowardsMaxInterval() {
+        PageEntity page = page(0, 0);
+        page.setChangeRate(0.0);
+        assertThat(policy.intervalMinutes(page)).isEqualTo(168 * 60);
+
+        page.setChangeRate(1000.0);
+        assertThat(policy.intervalMinutes(page)).isEqualTo(5);
+    }
+
+    @Test
+    void importantPagesAreRevisitedMoreOften() {
+        PageEntity deep = page(0, 3);
+        PageEntity home = page(100, 0);
+        assertThat(RevisitPolicy.importance(deep)).isEqualTo(1.0);
+        assertThat(RevisitPolicy.importance(home)).isGreaterThan(1.0);
+        assertThat(policy.intervalMinutes(home)).isLessThan(policy.intervalMinutes(deep));
+    }
+
+    @Test
+    void postponeKeepsEstimate() {
+        PageEntity page = page(0, 0);
+        page.setChangeRate(1.0);
+        policy.postpone(page, NOW);
+
+        assertThat(page.getChangeRate()).isEqualTo(1.0);
+        assertThat(page.getNextVisit()).isEqualTo(NOW.plusDays(1));
+    }
+
+    private static PageEntity page(int inlinks, int depth) {
+        PageEntity page = new PageEntity();
+        page.setInlinks(inlinks);
+        page.setDepth(depth);
+        return page;
+    }
+}
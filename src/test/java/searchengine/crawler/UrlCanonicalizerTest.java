@@ -0,0 +1,85 @@
+package searchengine.crawler;
+
+import org.junit.jupiter.api.Test;
+import searchengine.config.Site;
+import searchengine.config.SitesList;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UrlCanonicalizerTest {
+
+    private final UrlCanonicalizer canonicalizer = new UrlCanonicalizer(new SitesList());
+
+    @Test
+    void normalizesSchemeHostPortAndPath() {
+        assertThat(canonicalizer.canonicalize("HTTP://Example.COM:80/a//b/./c/../d/#top"))
+                .isEqualTo("http://example.com/a/b/d");
+        assertThat(canonicalizer.canonicalize("https://example.com:443")).isEqualTo("https://example.com/");
+        assertThat(canonicalizer.canonicalize("https://example.com:8443/x/")).isEqualTo("https://example.com:8443/x");
+    }
+
+    @Test
+    void convertsIdnAndUnderscoreHosts() {
+        assertThat(canonicalizer.canonicalize("https://Пример.РФ/каталог/?utm_source=x"))
+                .isEqualTo("https://xn--e1afmkfd.xn--p1ai/каталог");
+        assertThat(canonicalizer.canonicalize("http://пример.рф:8080/a/"))
+                .isEqualTo("http://xn--e1afmkfd.xn--p1ai:8080/a");
+        assertThat(canonicalizer.origin("https://пример.рф/a")).isEqualTo("https://xn--e1afmkfd.xn--p1ai");
+        assertThat(canonicalizer.canonicalize("https://my_host.example.com/a"))
+                .isEqualTo("https://my_host.example.com/a");
+    }
+
+    @Test
+    void stripsTrackingAndSortsQuery() {
+        assertThat(canonicalizer.canonicalize("https://example.com/p?utm_source=x&b=2&gclid=1&a=1&UTM_Medium=y"))
+                .isEqualTo("https://example.com/p?a=1&b=2");
+        assertThat(canonicalizer.canonicalize("https://example.com/p?utm_campaign=z")).isEqualTo("https://example.com/p");
+    }
+
+    @Test
+    void keepsGenericParamsByDefault() {
+        assertThat(canonicalizer.canonicalize("https://example.com/p?ref=main&from=catalog&mc_cid=1"))
+                .isEqualTo("https://example.com/p?from=catalog&ref=main");
+    }
+
+    @Test
+    void siteCanOptInToMoreParams() {
+        Site news = new Site();
+        news.setUrl("https://News.example.com/");
+        news.setTrackingParams(List.of("from", "ref"));
+        Site shop = new Site();
+        shop.setUrl("https://shop.example.com");
+        SitesList sitesList = new SitesList();
+        sitesList.setSites(List.of(news, shop));
+        UrlCanonicalizer perSite = new UrlCanonicalizer(sitesList);
+
+        assertThat(perSite.canonicalize("https://news.example.com/a?from=rss&id=7&utm_source=x"))
+                .isEqualTo("https://news.example.com/a?id=7");
+        assertThat(perSite.canonicalize("https://shop.example.com/a?from=rss&id=7&utm_source=x"))
+                .isEqualTo("https://shop.example.com/a?from=rss&id=7");
+    }
+
+    @Test
+    void rejectsNonHttpAndOverlongUrls() {
+        assertThat(canonicalizer.canonicalize("mailto:someone@example.com")).isNull();
+        assertThat(canonicalizer.canonicalize("javascript:void(0)")).isNull();
+        assertThat(canonicalizer.canonicalize("")).isNull();
+        assertThat(canonicalizer.canonicalize("https://example.com/" + "a".repeat(UrlCanonicalizer.MAX_PATH_LENGTH)))
+                .isNull();
+    }
+
+    @Test
+    void originDropsPath() {
+        assertThat(canonicalizer.origin("https://Example.com:8080/a?b=1")).isEqualTo("https://example.com:8080");
+    }
+
+    @Test
+    void binaryLinksAreNotFetchable() {
+        assertThat(canonicalizer.isFetchable("https://example.com/doc.PDF")).isFalse();
+        assertThat(canonicalizer.isFetchable("https://example.com/img/logo.png")).isFalse();
+        assertThat(canonicalizer.isFetchable("https://example.com/page.html")).isTrue();
+        assertThat(canonicalizer.isFetchable("https://example.com/v1.2/page")).isTrue();
+    }
+}
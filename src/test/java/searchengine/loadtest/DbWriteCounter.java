@@ -0,0 +1,155 @@
+package searchengine.loadtest;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Счётчик записей в БД для нагрузочного прогона: оборачивает DataSource и считает
+ * пишущие обращения (включая пакеты JdbcTemplate и Hibernate) и затронутые ими
+ * строки по видам insert/update/delete — по счётчикам, которые вернул драйвер.
+ */
+@Component
+@Profile("loadtest")
+public class DbWriteCounter implements BeanPostProcessor {
+
+    private final LongAdder roundTrips = new LongAdder();
+    private final LongAdder inserts = new LongAdder();
+    private final LongAdder updates = new LongAdder();
+    private final LongAdder deletes = new LongAdder();
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        // только основной DataSource: пулы за маршрутизатором чтения/записи не трогаем
+        if (bean instanceof DataSource ds && beanName.equals("dataSource")) {
+            return new CountingDataSource(ds);
+        }
+        return bean;
+    }
+
+    public Map<String, Long> snapshot() {
+        Map<String, Long> m = new LinkedHashMap<>();
+        m.put("writeRoundTrips", roundTrips.sum());
+        m.put("insertedRows", inserts.sum());
+        m.put("updatedRows", updates.sum());
+        m.put("deletedRows", deletes.sum());
+        return m;
+    }
+
+    private LongAdder counterFor(String sql) {
+        if (sql == null) return null;
+        String s = sql.stripLeading().toLowerCase(Locale.ROOT);
+        if (s.startsWith("insert")) return inserts;
+        if (s.startsWith("update")) return updates;
+        if (s.startsWith("delete")) return deletes;
+        return null;
+    }
+
+    private class CountingDataSource extends DelegatingDataSource {
+        CountingDataSource(DataSource target) {
+            super(target);
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            return wrap(super.getConnection());
+        }
+
+        @Override
+        public Connection getConnection(String username, String password) throws SQLException {
+            return wrap(super.getConnection(username, password));
+        }
+
+        private Connection wrap(Connection target) {
+            return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Connection.class},
+                    (proxy, method, args) -> {
+                        Object result = invoke(target, method, args);
+                        if (method.getName().equals("prepareStatement") && result instanceof PreparedStatement ps) {
+                            return statement(ps, PreparedStatement.class, (String) args[0]);
+                        }
+                        if (method.getName().equals("createStatement") && result instanceof Statement st) {
+                            return statement(st, Statement.class, null);
+                        }
+                        return result;
+                    });
+        }
+    }
+
+    private Object statement(Statement target, Class<?> type, String preparedSql) {
+        long[] pending = new long[1];
+        LongAdder[] pendingCounter = new LongAdder[1];
+        return Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+            String name = method.getName();
+            String sql = preparedSql != null ? preparedSql : args != null && args.length > 0 && args[0] instanceof String s ? s : null;
+            LongAdder counter = counterFor(sql);
+            Object result = invoke(target, method, args);
+            switch (name) {
+                case "execute", "executeUpdate", "executeLargeUpdate" -> {
+                    if (counter != null) {
+                        roundTrips.increment();
+                        counter.add(updateCount(target, result));
+                    }
+                }
+                case "addBatch" -> {
+                    if (counter != null) {
+                        pending[0]++;
+                        pendingCounter[0] = counter;
+                    }
+                }
+                case "executeBatch", "executeLargeBatch" -> {
+                    if (pendingCounter[0] != null) {
+                        roundTrips.increment();
+                        pendingCounter[0].add(batchCount(result, pending[0]));
+                    }
+                    pending[0] = 0;
+                }
+                case "clearBatch" -> pending[0] = 0;
+                default -> {
+                }
+            }
+            return result;
+        });
+    }
+
+    /** Число затронутых строк: execute() возвращает только признак, счётчик берётся у оператора. */
+    private static long updateCount(Statement st, Object result) throws SQLException {
+        if (result instanceof Number n) return Math.max(0, n.longValue());
+        if (Boolean.FALSE.equals(result)) return Math.max(0, st.getUpdateCount());
+        return 0;
+    }
+
+    /** Сумма счётчиков пакета; SUCCESS_NO_INFO драйвера считается одной строкой. */
+    private static long batchCount(Object result, long statements) {
+        long rows = 0;
+        if (result instanceof int[] counts) {
+            for (int c : counts) rows += c >= 0 ? c : c == Statement.SUCCESS_NO_INFO ? 1 : 0;
+        } else if (result instanceof long[] counts) {
+            for (long c : counts) rows += c >= 0 ? c : c == Statement.SUCCESS_NO_INFO ? 1 : 0;
+        } else {
+            rows = statements;
+        }
+        return rows;
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+}
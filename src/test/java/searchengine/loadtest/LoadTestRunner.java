@@ -0,0 +1,134 @@
+package searchengine.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import searchengine.config.Site;
+import searchengine.config.SitesList;
+import searchengine.crawler.LatencyHistogram;
+import searchengine.dto.indexing.SiteProgressEvent;
+import searchengine.services.IndexingProgress;
+import searchengine.services.IndexingServiceImpl;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Нагрузочный прогон обхода: поднимает {@link SyntheticSiteServer}, запускает полную
+ * индексацию против встроенной БД и печатает отчёт — страниц в секунду, p50/p99
+ * времени обработки страницы, пик занятой кучи (по выборке раз в 50 мс) и число
+ * записей в БД. Запуск: mvn -Ploadtest test-compile spring-boot:run
+ */
+@Component
+@Profile("loadtest")
+@RequiredArgsConstructor
+public class LoadTestRunner implements ApplicationRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(LoadTestRunner.class);
+
+    private final LoadTestSettings settings;
+    private final SitesList sitesList;
+    private final IndexingServiceImpl indexingService;
+    private final IndexingProgress indexingProgress;
+    private final DbWriteCounter dbWriteCounter;
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final ConfigurableApplicationContext context;
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        Map<String, Object> report;
+        try (SyntheticSiteServer server = new SyntheticSiteServer(settings)) {
+            server.start();
+            Site site = new Site();
+            site.setUrl(server.baseUrl());
+            site.setName("Синтетический сайт");
+            sitesList.setSites(List.of(site));
+            logger.info("Нагрузочный прогон: {} страниц, fan-out {}, {} слов на странице, сервер {}",
+                    settings.getPages(), settings.getFanOut(), settings.getWordsPerPage(), server.baseUrl());
+
+            MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+            AtomicLong heapPeak = new AtomicLong();
+            ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor();
+            sampler.scheduleAtFixedRate(() -> heapPeak.accumulateAndGet(memory.getHeapMemoryUsage().getUsed(), Math::max),
+                    0, 50, TimeUnit.MILLISECONDS);
+            Map<String, Long> writesBefore = dbWriteCounter.snapshot();
+
+            long started = System.nanoTime();
+            indexingService.startIndexing();
+            long deadline = started + TimeUnit.MINUTES.toNanos(settings.getTimeoutMinutes());
+            while (indexingService.isIndexing() && System.nanoTime() < deadline) {
+                Thread.sleep(200);
+            }
+            boolean timedOut = indexingService.isIndexing();
+            if (timedOut) indexingService.stopIndexing();
+            double seconds = (System.nanoTime() - started) / 1e9;
+            sampler.shutdownNow();
+
+            report = report(site.getUrl(), server, seconds, heapPeak.get(), writesBefore, timedOut);
+        }
+
+        String json = objectMapper.copy().enable(SerializationFeature.INDENT_OUTPUT).writeValueAsString(report);
+        logger.info("Результат нагрузочного прогона:\n{}", json);
+        Path reportPath = Path.of(settings.getReportPath());
+        if (reportPath.getParent() != null) Files.createDirectories(reportPath.getParent());
+        Files.writeString(reportPath, json);
+
+        if (settings.isExitOnFinish()) {
+            System.exit(SpringApplication.exit(context, () -> 0));
+        }
+    }
+
+    private Map<String, Object> report(String url, SyntheticSiteServer server, double seconds, long heapPeak,
+                                       Map<String, Long> writesBefore, boolean timedOut) {
+        SiteProgressEvent progress = indexingProgress.snapshot().stream()
+                .filter(e -> e.getUrl().equals(url)).findFirst().orElseGet(SiteProgressEvent::new);
+        LatencyHistogram latency = indexingProgress.site(url).map(IndexingProgress.SiteProgress::getLatency)
+                .orElseGet(LatencyHistogram::new);
+
+        Map<String, Object> r = new LinkedHashMap<>();
+        r.put("timedOut", timedOut);
+        r.put("status", progress.getStatus());
+        r.put("seconds", Math.round(seconds * 100) / 100.0);
+        r.put("pagesFetched", progress.getPagesFetched());
+        r.put("pagesFailed", progress.getPagesFailed());
+        r.put("pagesPerSecond", Math.round(progress.getPagesFetched() / Math.max(seconds, 1e-3) * 100) / 100.0);
+        r.put("pageLatencyP50Ms", latency.percentile(50));
+        r.put("pageLatencyP99Ms", latency.percentile(99));
+        r.put("heapPeakMb", heapPeak / (1024 * 1024));
+        r.put("serverResponses", server.getServed());
+        r.put("serverErrors", server.getErrors());
+
+        Map<String, Long> writes = new LinkedHashMap<>();
+        dbWriteCounter.snapshot().forEach((k, v) -> writes.put(k, v - writesBefore.getOrDefault(k, 0L)));
+        r.put("dbWrites", writes);
+        r.put("rows", Map.of(
+                "page", count("page"),
+                "lemma", count("lemma"),
+                "idx", count("idx")));
+        return r;
+    }
+
+    private long count(String table) {
+        Long n = jdbcTemplate.queryForObject("select count(*) from " + table, Long.class);
+        return n == null ? 0 : n;
+    }
+}
@@ -0,0 +1,29 @@
+package searchengine.loadtest;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+@Getter
+@Setter
+@Component
+@Profile("loadtest")
+@ConfigurationProperties(prefix = "loadtest")
+public class LoadTestSettings {
+    private int port = 0;
+    private int serverThreads = 32;
+    private int pages = 2000;
+    private int fanOut = 12;
+    private int crossLinks = 2;
+    private int wordsPerPage = 400;
+    private int latencyMs = 20;
+    private int latencyJitterMs = 30;
+    private double errorRate = 0.01;
+    private double notFoundRate = 0.01;
+    private long seed = 42;
+    private int timeoutMinutes = 30;
+    private String reportPath = "target/loadtest-report.json";
+    private boolean exitOnFinish = true;
+}
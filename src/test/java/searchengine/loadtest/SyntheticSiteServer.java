@@ -0,0 +1,167 @@
+package searchengine.loadtest;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Локальный HTTP-сервер со сгенерированным сайтом для нагрузочного прогона обходчика.
+ * Страница n доступна по /page/n (корень — страница 0) и ссылается на fan-out дочерних
+ * страниц дерева и на несколько случайных, уже встречавшихся. Текст собирается из
+ * русского словаря с перекосом в сторону частых слов, как в живых текстах;
+ * меню и подвал одинаковы на всех страницах, как шаблон реального сайта.
+ * Содержимое, задержка и ошибки определяются номером страницы и seed, поэтому
+ * прогоны воспроизводимы.
+ */
+public class SyntheticSiteServer implements AutoCloseable {
+
+    private static final String[] WORDS = (
+            "время человек год дело жизнь день рука работа слово место лицо друг глаз вопрос дом сторона "
+            + "страна мир случай голова ребёнок сила конец вид система часть город отношение женщина деньги "
+            + "земля машина вода отец проблема час право нога решение дверь образ история власть закон война "
+            + "бог голос тысяча книга возможность результат ночь стол имя область статья число компания народ "
+            + "жена группа развитие процесс суд условие средство начало свет пора путь душа уровень форма связь "
+            + "минута улица вечер качество мысль дорога мать действие месяц государство язык любовь взгляд мама "
+            + "век школа цель общество деятельность организация президент комната порядок момент театр письмо "
+            + "новый большой хороший главный последний российский русский общий высокий молодой государственный "
+            + "белый настоящий политический старый полный социальный важный живой сильный чёрный простой "
+            + "говорить сказать знать стать видеть хотеть идти сидеть понять иметь думать смотреть ответить "
+            + "работать сделать жить читать писать играть строить искать находить помогать открывать узнать "
+            + "быстро медленно сегодня завтра вчера всегда часто редко далеко близко хорошо плохо").split(" ");
+
+    private static final String MENU = "<header><ul><li>Главная</li><li>Новости</li><li>Контакты</li>"
+            + "<li>Реклама на сайте</li></ul></header>";
+    private static final String FOOTER = "<footer><p>Мы используем файлы cookie для улучшения работы сайта.</p>"
+            + "<p>Все права защищены. Перепечатка материалов запрещена.</p></footer>";
+
+    private final LoadTestSettings settings;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final AtomicLong served = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+
+    public SyntheticSiteServer(LoadTestSettings settings) throws IOException {
+        this.settings = settings;
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", settings.getPort()), 0);
+        this.executor = Executors.newFixedThreadPool(settings.getServerThreads());
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public String baseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    public long getServed() {
+        return served.get();
+    }
+
+    public long getErrors() {
+        return errors.get();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            int n = pageNumber(exchange.getRequestURI().getPath());
+            if (n < 0 || n >= settings.getPages()) {
+                respond(exchange, 404, "<html><body>Нет такой страницы</body></html>");
+                return;
+            }
+            Random rnd = new Random(settings.getSeed() * 31 + n);
+            sleep(settings.getLatencyMs() + (settings.getLatencyJitterMs() > 0 ? rnd.nextInt(settings.getLatencyJitterMs()) : 0));
+
+            double roll = rnd.nextDouble();
+            if (n > 0 && roll < settings.getErrorRate()) {
+                errors.incrementAndGet();
+                respond(exchange, 500, "<html><body>Внутренняя ошибка</body></html>");
+                return;
+            }
+            if (n > 0 && roll < settings.getErrorRate() + settings.getNotFoundRate()) {
+                respond(exchange, 404, "<html><body>Страница не найдена</body></html>");
+                return;
+            }
+            respond(exchange, 200, render(n, rnd));
+        }
+    }
+
+    private String render(int n, Random rnd) {
+        StringBuilder html = new StringBuilder(settings.getWordsPerPage() * 10 + 1024);
+        html.append("<!DOCTYPE html><html><head><meta charset=\"utf-8\"><title>Страница ")
+                .append(n).append(' ').append(word(rnd)).append("</title></head><body>").append(MENU).append("<h1>")
+                .append(word(rnd)).append(' ').append(word(rnd)).append("</h1><p>");
+        for (int i = 0; i < settings.getWordsPerPage(); i++) {
+            html.append(word(rnd));
+            html.append(i % 15 == 14 ? ". " : " ");
+            if (i % 120 == 119) html.append("</p><p>");
+        }
+        html.append("</p><nav>");
+        int fanOut = settings.getFanOut();
+        for (int c = 1; c <= fanOut; c++) {
+            long child = (long) n * fanOut + c;
+            if (child < settings.getPages()) link(html, (int) child);
+        }
+        for (int i = 0; i < settings.getCrossLinks(); i++) {
+            link(html, rnd.nextInt(Math.max(1, n + 1)));
+        }
+        html.append("<a href=\"https://example.org/external\">внешняя ссылка</a>");
+        html.append("</nav>").append(FOOTER).append("</body></html>");
+        return html.toString();
+    }
+
+    private void link(StringBuilder html, int page) {
+        html.append("<a href=\"").append(page == 0 ? "/" : "/page/" + page).append("\">")
+                .append("страница ").append(page).append("</a> ");
+    }
+
+    private String word(Random rnd) {
+        // кубическое распределение: начало словаря встречается заметно чаще
+        return WORDS[(int) (WORDS.length * Math.pow(rnd.nextDouble(), 3))];
+    }
+
+    private int pageNumber(String path) {
+        if (path.equals("/") || path.isEmpty()) return 0;
+        if (!path.startsWith("/page/")) return -1;
+        try {
+            return Integer.parseInt(path.substring("/page/".length()).replaceAll("/+$", ""));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private void respond(HttpExchange exchange, int code, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/html; charset=utf-8");
+        exchange.sendResponseHeaders(code, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+        served.incrementAndGet();
+    }
+
+    private static void sleep(long ms) {
+        if (ms <= 0) return;
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
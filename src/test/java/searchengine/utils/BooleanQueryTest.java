@@ -0,0 +1,91 @@
+package searchengine.utils;
+
+import org.junit.jupiter.api.Test;
+import org.roaringbitmap.RoaringBitmap;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class BooleanQueryTest {
+
+    private static final Map<String, RoaringBitmap> POSTINGS = Map.of(
+            "кот", RoaringBitmap.bitmapOf(1, 2, 3),
+            "пёс", RoaringBitmap.bitmapOf(3, 4),
+            "мышь", RoaringBitmap.bitmapOf(2, 5));
+
+    private static final RoaringBitmap UNIVERSE = RoaringBitmap.bitmapOf(1, 2, 3, 4, 5, 6);
+
+    @Test
+    void plainWordsAreImplicitAnd() {
+        BooleanQuery.Node node = BooleanQuery.parse("Кот пёс");
+        assertThat(node).isInstanceOf(BooleanQuery.And.class);
+        assertThat(words(node)).containsExactlyInAnyOrder("кот", "пёс");
+        assertThat(eval("кот пёс")).containsExactly(3);
+    }
+
+    @Test
+    void orBindsWeakerThanAnd() {
+        assertThat(eval("кот пёс OR мышь")).containsExactly(2, 3, 5);
+        assertThat(eval("кот | мышь")).containsExactly(1, 2, 3, 5);
+        assertThat(eval("кот ИЛИ пёс")).containsExactly(1, 2, 3, 4);
+    }
+
+    @Test
+    void lowercaseOperatorsAreWords() {
+        assertThat(words(BooleanQuery.parse("кот or пёс"))).containsExactlyInAnyOrder("кот", "or", "пёс");
+    }
+
+    @Test
+    void negationExcludesPages() {
+        assertThat(eval("кот -пёс")).containsExactly(1, 2);
+        assertThat(eval("кот NOT мышь")).containsExactly(1, 3);
+        assertThat(eval("кот НЕ (пёс OR мышь)")).containsExactly(1);
+    }
+
+    @Test
+    void negatedResultUsesUniverse() {
+        assertThat(eval("кот OR -пёс")).containsExactly(1, 2, 3, 5, 6);
+    }
+
+    @Test
+    void hyphenInsideWordIsNotNegation() {
+        BooleanQuery.Node node = BooleanQuery.parse("северо-запад");
+        assertThat(node).isInstanceOf(BooleanQuery.Term.class);
+        assertThat(((BooleanQuery.Term) node).getWord()).isEqualTo("северо-запад");
+    }
+
+    @Test
+    void danglingNegationIsDropped() {
+        assertThat(words(BooleanQuery.parse("(кот -)"))).containsExactly("кот");
+        assertThat(words(BooleanQuery.parse("кот NOT OR пёс"))).containsExactlyInAnyOrder("кот", "пёс");
+        assertThat(words(BooleanQuery.parse("кот -"))).containsExactly("кот");
+        assertThat(eval("(кот -) пёс")).containsExactly(3);
+    }
+
+    @Test
+    void unknownWordsDropOutOfExpression() {
+        assertThat(eval("кот слон")).containsExactly(1, 2, 3);
+        assertThat(eval("слон")).isEmpty();
+    }
+
+    @Test
+    void emptyOrBrokenQueryIsRejected() {
+        assertThatThrownBy(() -> BooleanQuery.parse("   ")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> BooleanQuery.parse("кот )")).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static int[] eval(String query) {
+        return BooleanQuery.evaluate(BooleanQuery.parse(query),
+                term -> POSTINGS.get(term.getWord()), () -> UNIVERSE).toArray();
+    }
+
+    private static Set<String> words(BooleanQuery.Node node) {
+        Set<String> all = new HashSet<>();
+        node.collectWords(all, all, false);
+        return all;
+    }
+}
@@ -0,0 +1,58 @@
+package searchengine.utils;
+
+import org.apache.lucene.morphology.russian.RussianLuceneMorphology;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MappedMorphologyTest {
+
+    private static final List<String> WORDS = List.of(
+            "кошки", "кошка", "дом", "домами", "красивой", "бежать", "бегут", "в", "и", "но",
+            "ёжики", "по-русски", "сказка", "лесов", "мы", "шёл", "а", "стекло", "программирование");
+
+    private static RussianLuceneMorphology lucene;
+
+    @TempDir
+    static Path dir;
+
+    @BeforeAll
+    static void loadLucene() throws Exception {
+        lucene = new RussianLuceneMorphology();
+    }
+
+    @Test
+    void mappedDictionaryMatchesLuceneMorphology() throws Exception {
+        MorphologyDictionary mapped = MappedMorphology.open(dir.resolve("same.dict"));
+        assertThat(mapped).isInstanceOf(MappedMorphology.class);
+        for (String word : WORDS) {
+            assertThat(mapped.getNormalForms(word)).as(word).isEqualTo(lucene.getNormalForms(word));
+            assertThat(mapped.getMorphInfo(word)).as(word).isEqualTo(lucene.getMorphInfo(word));
+        }
+    }
+
+    @Test
+    void reusesWrittenFileAndRebuildsDamagedOne() throws Exception {
+        Path file = dir.resolve("reuse.dict");
+        MappedMorphology.open(file);
+        long written = Files.getLastModifiedTime(file).toMillis();
+        assertThat(MappedMorphology.map(file)).isNotNull();
+
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            raf.seek(raf.length() / 2);
+            int b = raf.read();
+            raf.seek(raf.length() / 2);
+            raf.write(b ^ 0xff);
+        }
+        assertThat(MappedMorphology.map(file)).isNull();
+        assertThat(MappedMorphology.open(file)).isInstanceOf(MappedMorphology.class);
+        assertThat(Files.getLastModifiedTime(file).toMillis()).isGreaterThanOrEqualTo(written);
+    }
+}